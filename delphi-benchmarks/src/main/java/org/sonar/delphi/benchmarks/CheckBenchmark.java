@@ -0,0 +1,116 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.delphi.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import com.sonar.sslr.api.typed.ActionParser;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.delphi.checks.CheckList;
+import org.sonar.delphi.parser.DelphiParserBuilder;
+import org.sonar.delphi.se.SeCheck;
+import org.sonar.delphi.se.SeChecksDispatcher;
+import org.sonar.delphi.visitors.DelphiVisitorContext;
+import org.sonar.plugins.delphi.api.DelphiCheck;
+import org.sonar.plugins.delphi.api.tree.ScriptTree;
+
+/**
+ * Cost of scanning an already parsed unit with one check, given by its simple class name, or with all of them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CheckBenchmark {
+
+  private static final String ALL_CHECKS = "all";
+
+  @Param({ALL_CHECKS})
+  public String check;
+
+  @Param({"realistic"})
+  public String corpus;
+
+  @Param({"5000"})
+  public int lines;
+
+  private DelphiVisitorContext context;
+  private List<DelphiCheck> checks;
+
+  @Setup
+  public void setUp() throws ReflectiveOperationException {
+    String source = new DelphiSourceGenerator(Seeds.SOURCES).unit("CheckBenchmark", DelphiSourceGenerator.Shape.of(corpus), lines);
+    ActionParser<?> parser = DelphiParserBuilder.createParser();
+    ScriptTree tree = (ScriptTree) parser.parse(source);
+    context = new DelphiVisitorContext(
+      tree,
+      GeneratedProject.inputFile(Paths.get("."), "CheckBenchmark.pas", source),
+      new MapSettings().asConfig());
+    checks = instantiateChecks();
+  }
+
+  private List<DelphiCheck> instantiateChecks() throws ReflectiveOperationException {
+    List<DelphiCheck> instances = new ArrayList<>();
+    List<SeCheck> seChecks = new ArrayList<>();
+    for (Class<?> checkClass : CheckList.getChecks()) {
+      if (ALL_CHECKS.equals(check) || checkClass.getSimpleName().equals(check)) {
+        Object instance = checkClass.newInstance();
+        if (instance instanceof SeCheck) {
+          seChecks.add((SeCheck) instance);
+        } else if (instance instanceof DelphiCheck) {
+          instances.add((DelphiCheck) instance);
+        }
+      }
+    }
+    if (!seChecks.isEmpty()) {
+      instances.add(new SeChecksDispatcher(ImmutableList.copyOf(seChecks)));
+    }
+    if (instances.isEmpty()) {
+      throw new IllegalArgumentException("No check named " + check);
+    }
+    return instances;
+  }
+
+  @Benchmark
+  public int scan() {
+    int issues = 0;
+    for (DelphiCheck delphiCheck : checks) {
+      issues += delphiCheck.scanFile(context).size();
+    }
+    return issues;
+  }
+
+}
@@ -0,0 +1,259 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.delphi.benchmarks;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates reproducible Delphi units: the same seed, shape and size always give the same source.
+ */
+public final class DelphiSourceGenerator {
+
+  public enum Shape {
+    /**
+     * Small classes with uniform, simple routines.
+     */
+    SYNTHETIC,
+    /**
+     * Mix of what real code bases contain: forms with many components and event handlers, records, enumerations,
+     * constants, long routines with nested control flow, comments and compiler directives.
+     */
+    REALISTIC;
+
+    public static Shape of(String name) {
+      return valueOf(name.toUpperCase(Locale.ENGLISH));
+    }
+  }
+
+  private static final String[] TYPES = {"Integer", "string", "Boolean", "Double", "Int64", "TDateTime"};
+
+  private final Random random;
+  private int lines;
+
+  public DelphiSourceGenerator(long seed) {
+    this.random = new Random(seed);
+  }
+
+  /**
+   * Generates a unit of at least {@code targetLines} lines.
+   */
+  public String unit(String unitName, Shape shape, int targetLines) {
+    StringBuilder interfaceSection = new StringBuilder();
+    StringBuilder implementationSection = new StringBuilder();
+    lines = 0;
+
+    int index = 0;
+    while (lines < targetLines) {
+      if (shape == Shape.SYNTHETIC) {
+        simpleClass(interfaceSection, implementationSection, "TSynthetic" + index);
+      } else {
+        realisticDeclaration(interfaceSection, implementationSection, index);
+      }
+      index++;
+    }
+
+    StringBuilder unit = new StringBuilder(interfaceSection.length() + implementationSection.length() + 256);
+    unit.append("unit ").append(unitName).append(";\n\n")
+      .append("interface\n\n")
+      .append("uses\n  System.SysUtils, System.Classes, System.Generics.Collections;\n\n")
+      .append("type\n")
+      .append(interfaceSection)
+      .append("\nimplementation\n\n")
+      .append(implementationSection)
+      .append("end.\n");
+    return unit.toString();
+  }
+
+  private void realisticDeclaration(StringBuilder interfaceSection, StringBuilder implementationSection, int index) {
+    switch (random.nextInt(6)) {
+      case 0:
+        form(interfaceSection, implementationSection, "TForm" + index);
+        break;
+      case 1:
+        enumerationAndRecord(interfaceSection, "T" + index);
+        break;
+      default:
+        simpleClass(interfaceSection, implementationSection, "TService" + index);
+        break;
+    }
+  }
+
+  private void simpleClass(StringBuilder declarations, StringBuilder implementations, String className) {
+    int fields = 2 + random.nextInt(4);
+    int methods = 2 + random.nextInt(4);
+
+    line(declarations, "  " + className + " = class(TObject)");
+    line(declarations, "  private");
+    for (int i = 0; i < fields; i++) {
+      line(declarations, "    F" + fieldName(i) + ": " + TYPES[i % TYPES.length] + ";");
+    }
+    line(declarations, "  public");
+    line(declarations, "    constructor Create;");
+    for (int i = 0; i < methods; i++) {
+      line(declarations, "    procedure Method" + i + "(AValue: Integer);");
+    }
+    line(declarations, "    property " + fieldName(0) + ": Integer read F" + fieldName(0) + " write F" + fieldName(0) + ";");
+    line(declarations, "  end;");
+    line(declarations, "");
+
+    line(implementations, "{ " + className + " }");
+    line(implementations, "");
+    line(implementations, "constructor " + className + ".Create;");
+    line(implementations, "begin");
+    line(implementations, "  inherited Create;");
+    line(implementations, "  F" + fieldName(0) + " := 0;");
+    line(implementations, "end;");
+    line(implementations, "");
+    for (int i = 0; i < methods; i++) {
+      simpleMethod(implementations, className, "Method" + i);
+    }
+  }
+
+  private void simpleMethod(StringBuilder implementations, String className, String methodName) {
+    line(implementations, "procedure " + className + "." + methodName + "(AValue: Integer);");
+    line(implementations, "var");
+    line(implementations, "  I: Integer;");
+    line(implementations, "begin");
+    line(implementations, "  for I := 0 to AValue - 1 do");
+    line(implementations, "    if I mod 2 = 0 then");
+    line(implementations, "      Inc(F" + fieldName(0) + ")");
+    line(implementations, "    else");
+    line(implementations, "      Dec(F" + fieldName(0) + ");");
+    line(implementations, "end;");
+    line(implementations, "");
+  }
+
+  private void form(StringBuilder declarations, StringBuilder implementations, String className) {
+    int components = 10 + random.nextInt(40);
+    int handlers = 3 + random.nextInt(8);
+
+    line(declarations, "  " + className + " = class(TForm)");
+    for (int i = 0; i < components; i++) {
+      line(declarations, "    " + componentName(i) + ": " + componentType(i) + ";");
+    }
+    for (int i = 0; i < handlers; i++) {
+      line(declarations, "    procedure " + componentName(i) + "Click(Sender: TObject);");
+    }
+    line(declarations, "  private");
+    line(declarations, "    { Private declarations }");
+    line(declarations, "    FItems: TList<string>;");
+    line(declarations, "  public");
+    line(declarations, "    { Public declarations }");
+    line(declarations, "  end;");
+    line(declarations, "");
+
+    line(implementations, "{$R *.dfm}");
+    line(implementations, "");
+    for (int i = 0; i < handlers; i++) {
+      eventHandler(implementations, className, componentName(i) + "Click");
+    }
+  }
+
+  private void eventHandler(StringBuilder implementations, String className, String methodName) {
+    int statements = 3 + random.nextInt(12);
+    line(implementations, "procedure " + className + "." + methodName + "(Sender: TObject);");
+    line(implementations, "var");
+    line(implementations, "  LIndex: Integer;");
+    line(implementations, "  LText: string;");
+    line(implementations, "begin");
+    line(implementations, "  // generated event handler");
+    line(implementations, "  LText := '';");
+    line(implementations, "  try");
+    for (int i = 0; i < statements; i++) {
+      statement(implementations, "    ", i);
+    }
+    line(implementations, "  except");
+    line(implementations, "    on E: Exception do");
+    line(implementations, "      raise Exception.CreateFmt('Failed in %s: %s', ['" + methodName + "', E.Message]);");
+    line(implementations, "  end;");
+    line(implementations, "end;");
+    line(implementations, "");
+  }
+
+  private void statement(StringBuilder implementations, String indent, int index) {
+    switch (random.nextInt(5)) {
+      case 0:
+        line(implementations, indent + "for LIndex := 0 to FItems.Count - 1 do");
+        line(implementations, indent + "  LText := LText + FItems[LIndex];");
+        break;
+      case 1:
+        line(implementations, indent + "if Length(LText) > " + index + " then");
+        line(implementations, indent + "begin");
+        line(implementations, indent + "  LText := Copy(LText, 1, " + index + ");");
+        line(implementations, indent + "end");
+        line(implementations, indent + "else");
+        line(implementations, indent + "  LText := LText + 'item " + index + "';");
+        break;
+      case 2:
+        line(implementations, indent + "case Length(LText) of");
+        line(implementations, indent + "  0: LText := 'empty';");
+        line(implementations, indent + "  1..9: LText := UpperCase(LText);");
+        line(implementations, indent + "else");
+        line(implementations, indent + "  LText := LowerCase(LText);");
+        line(implementations, indent + "end;");
+        break;
+      case 3:
+        line(implementations, indent + "LIndex := 0;");
+        line(implementations, indent + "while LIndex < " + (index + 1) + " do");
+        line(implementations, indent + "  Inc(LIndex);");
+        break;
+      default:
+        line(implementations, indent + "{ TODO: remove this workaround }");
+        line(implementations, indent + "FItems.Add(IntToStr(" + index + ") + LText);");
+        break;
+    }
+  }
+
+  private void enumerationAndRecord(StringBuilder declarations, String prefix) {
+    int values = 3 + random.nextInt(10);
+    StringBuilder enumeration = new StringBuilder("  " + prefix + "Kind = (");
+    for (int i = 0; i < values; i++) {
+      enumeration.append(i == 0 ? "" : ", ").append("k").append(fieldName(i));
+    }
+    line(declarations, enumeration.append(");").toString());
+    line(declarations, "");
+    line(declarations, "  " + prefix + "Info = record");
+    for (int i = 0; i < values; i++) {
+      line(declarations, "    " + fieldName(i) + ": " + TYPES[random.nextInt(TYPES.length)] + ";");
+    }
+    line(declarations, "  end;");
+    line(declarations, "");
+  }
+
+  private static String fieldName(int index) {
+    return "Value" + index;
+  }
+
+  private static String componentName(int index) {
+    return "Component" + index;
+  }
+
+  private static String componentType(int index) {
+    String[] types = {"TButton", "TEdit", "TLabel", "TPanel", "TComboBox"};
+    return types[index % types.length];
+  }
+
+  private void line(StringBuilder builder, String line) {
+    builder.append(line).append('\n');
+    lines++;
+  }
+
+}
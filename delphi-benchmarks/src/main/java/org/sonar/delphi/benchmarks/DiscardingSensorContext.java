@@ -0,0 +1,87 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.delphi.benchmarks;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.sonar.api.batch.sensor.SensorContext;
+
+/**
+ * Sensor context which discards the highlighting, symbols, CPD tokens and issues saved by the sensor, and delegates
+ * everything else. The in-memory storage of {@code SensorContextTester} keeps all of them for the whole run, which
+ * would otherwise dominate the heap usage of a large analysis.
+ */
+final class DiscardingSensorContext {
+
+  private static final Set<String> DISCARDED = new HashSet<>(Arrays.asList(
+    "newHighlighting", "newSymbolTable", "newCpdTokens", "newIssue"));
+
+  private DiscardingSensorContext() {
+  }
+
+  static SensorContext wrap(SensorContext delegate) {
+    return (SensorContext) Proxy.newProxyInstance(SensorContext.class.getClassLoader(), new Class<?>[] {SensorContext.class},
+      (proxy, method, args) -> {
+        if (DISCARDED.contains(method.getName())) {
+          return noOp(method.getReturnType());
+        }
+        try {
+          return method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+          throw e.getCause();
+        }
+      });
+  }
+
+  /**
+   * Implementation of a fluent builder interface, like {@code NewHighlighting}, which accepts and saves nothing.
+   */
+  private static Object noOp(Class<?> type) {
+    return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+      Class<?> returnType = method.getReturnType();
+      if (returnType.isInstance(proxy)) {
+        return proxy;
+      }
+      if (returnType.isInterface()) {
+        return noOp(returnType);
+      }
+      return defaultValue(method);
+    });
+  }
+
+  private static Object defaultValue(Method method) {
+    Class<?> returnType = method.getReturnType();
+    if (returnType == boolean.class) {
+      return false;
+    }
+    if (returnType == int.class) {
+      return 0;
+    }
+    if (returnType == long.class) {
+      return 0L;
+    }
+    return null;
+  }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.delphi.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.plugins.delphi.DelphiLanguage;
+
+/**
+ * In-memory project made of generated Delphi units written to a base directory.
+ */
+public final class GeneratedProject {
+
+  private GeneratedProject() {
+  }
+
+  public static SensorContextTester create(Path baseDir, int files, int linesPerFile, DelphiSourceGenerator.Shape shape, long seed)
+    throws IOException {
+    return create(baseDir, files, linesPerFile, shape, seed, true);
+  }
+
+  /**
+   * Same as {@link #create} but input files only keep their line metadata and read their contents from disk, like in a
+   * real scan, so that the heap used by a large project is not dominated by its sources.
+   */
+  public static SensorContextTester createOnDisk(Path baseDir, int files, int linesPerFile, DelphiSourceGenerator.Shape shape, long seed)
+    throws IOException {
+    return create(baseDir, files, linesPerFile, shape, seed, false);
+  }
+
+  private static SensorContextTester create(
+    Path baseDir, int files, int linesPerFile, DelphiSourceGenerator.Shape shape, long seed, boolean contentsInMemory
+  ) throws IOException {
+    SensorContextTester context = SensorContextTester.create(baseDir);
+    DelphiSourceGenerator generator = new DelphiSourceGenerator(seed);
+    Path sourceDir = Files.createDirectories(baseDir.resolve("src"));
+
+    for (int i = 0; i < files; i++) {
+      String unitName = "Unit" + i;
+      String source = generator.unit(unitName, shape, linesPerFile);
+      Files.write(sourceDir.resolve(unitName + ".pas"), source.getBytes(StandardCharsets.UTF_8));
+      String relativePath = "src/" + unitName + ".pas";
+      context.fileSystem().add(contentsInMemory ? inputFile(baseDir, relativePath, source) : inputFileOnDisk(baseDir, relativePath, source));
+    }
+    return context;
+  }
+
+  public static InputFile inputFile(Path baseDir, String relativePath, String source) {
+    return builder(baseDir, relativePath)
+      .setContents(source)
+      .build();
+  }
+
+  private static InputFile inputFileOnDisk(Path baseDir, String relativePath, String source) {
+    return builder(baseDir, relativePath)
+      .initMetadata(source)
+      .build();
+  }
+
+  private static TestInputFileBuilder builder(Path baseDir, String relativePath) {
+    return new TestInputFileBuilder("benchmark", relativePath)
+      .setModuleBaseDir(baseDir)
+      .setLanguage(DelphiLanguage.KEY)
+      .setType(InputFile.Type.MAIN)
+      .setCharset(StandardCharsets.UTF_8);
+  }
+
+}
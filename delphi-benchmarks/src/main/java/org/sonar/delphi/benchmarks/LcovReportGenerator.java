@@ -0,0 +1,71 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.delphi.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.sonar.api.batch.fs.InputFile;
+
+/**
+ * Generates reproducible LCOV reports of a given size over the files of a {@link GeneratedProject}. Files are covered
+ * again and again until the size is reached, as in merged reports of several test executables.
+ */
+public final class LcovReportGenerator {
+
+  private LcovReportGenerator() {
+  }
+
+  public static void write(Path report, Iterable<InputFile> inputFiles, long targetBytes, long seed) throws IOException {
+    Random random = new Random(seed);
+    long writtenBytes = 0;
+    try (Writer writer = new BufferedWriter(Files.newBufferedWriter(report, StandardCharsets.UTF_8), 1 << 16)) {
+      while (writtenBytes < targetBytes) {
+        for (InputFile inputFile : inputFiles) {
+          writtenBytes += record(writer, inputFile, random);
+          if (writtenBytes >= targetBytes) {
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  private static long record(Writer writer, InputFile inputFile, Random random) throws IOException {
+    StringBuilder record = new StringBuilder();
+    record.append("TN:\n");
+    record.append("SF:").append(inputFile.uri().getPath()).append('\n');
+    for (int line = 1; line <= inputFile.lines(); line++) {
+      record.append("DA:").append(line).append(',').append(random.nextInt(4) == 0 ? 0 : random.nextInt(1000)).append('\n');
+      if (line % 5 == 0) {
+        record.append("BRDA:").append(line).append(",0,0,").append(random.nextInt(10)).append('\n');
+        record.append("BRDA:").append(line).append(",0,1,").append(random.nextBoolean() ? "-" : "0").append('\n');
+      }
+    }
+    record.append("end_of_record\n");
+    writer.append(record);
+    return record.length();
+  }
+
+}
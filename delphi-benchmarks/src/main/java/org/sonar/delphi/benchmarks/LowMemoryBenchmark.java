@@ -0,0 +1,103 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.delphi.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.api.batch.rule.CheckFactory;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.issue.NoSonarFilter;
+import org.sonar.plugins.delphi.DelphiPlugin;
+import org.sonar.plugins.delphi.DelphiSensor;
+
+/**
+ * Low memory analysis of a large generated project within the 1 GB heap of our shared build agents. The run fails with
+ * an {@link OutOfMemoryError} if the heap usage of the analysis grows with the number of files again.
+ * <p>
+ * Input files read their contents from disk, and the highlighting, symbols, CPD tokens and issues saved by the sensor
+ * are discarded, so that the heap is left to the analysis itself rather than to the in-memory sensor context. Run it
+ * with {@code -prof gc} to follow allocation rates. The build checks a smaller project within a smaller heap, see
+ * {@code LowMemoryAnalysisTest} of the plugin.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx1g", "-XX:+ExitOnOutOfMemoryError"})
+public class LowMemoryBenchmark {
+
+  @Param({"2000"})
+  public int files;
+
+  @Param({"2000"})
+  public int linesPerFile;
+
+  private Path baseDir;
+  private SensorContext context;
+  private DelphiSensor sensor;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    baseDir = Files.createTempDirectory("delphi-low-memory-benchmark");
+    SensorContextTester tester = GeneratedProject.createOnDisk(baseDir, files, linesPerFile, DelphiSourceGenerator.Shape.REALISTIC,
+      Seeds.SOURCES);
+    MapSettings settings = new MapSettings();
+    settings.setProperty(DelphiPlugin.ANALYSIS_LOW_MEMORY, true);
+    tester.setSettings(settings);
+
+    ActiveRules activeRules = SensorBenchmark.allRules();
+    tester.setActiveRules(activeRules);
+    context = DiscardingSensorContext.wrap(tester);
+    sensor = new DelphiSensor(new CheckFactory(activeRules), new SensorBenchmark.NoOpFileLinesContextFactory(), tester.fileSystem(),
+      new NoSonarFilter());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    FileUtils.deleteQuietly(baseDir.toFile());
+  }
+
+  @Benchmark
+  public SensorContext execute() {
+    sensor.execute(context);
+    return context;
+  }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.delphi.benchmarks;
+
+import com.sonar.sslr.api.typed.ActionParser;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.delphi.parser.DelphiParserBuilder;
+import org.sonar.plugins.delphi.api.tree.Tree;
+
+/**
+ * Parse throughput. The {@code lines} counter reports parsed lines per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ParserBenchmark {
+
+  @Param({"synthetic", "realistic"})
+  public String corpus;
+
+  @Param({"1000", "20000"})
+  public int lines;
+
+  private ActionParser<Tree> parser;
+  private String source;
+  private int sourceLines;
+
+  @Setup
+  public void setUp() {
+    parser = DelphiParserBuilder.createParser();
+    source = new DelphiSourceGenerator(Seeds.SOURCES).unit("ParserBenchmark", DelphiSourceGenerator.Shape.of(corpus), lines);
+    sourceLines = source.split("\n", -1).length;
+  }
+
+  @Benchmark
+  public Tree parse(ParsedLines parsedLines) {
+    parsedLines.lines += sourceLines;
+    return parser.parse(source);
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class ParsedLines {
+    public long lines;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      lines = 0;
+    }
+  }
+
+}
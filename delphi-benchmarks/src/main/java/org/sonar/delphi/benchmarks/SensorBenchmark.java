@@ -0,0 +1,145 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.delphi.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.api.batch.rule.CheckFactory;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.issue.NoSonarFilter;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.AnnotationUtils;
+import org.sonar.check.Rule;
+import org.sonar.delphi.checks.CheckList;
+import org.sonar.plugins.delphi.DelphiPlugin;
+import org.sonar.plugins.delphi.DelphiSensor;
+
+/**
+ * Full {@link DelphiSensor} run, with every rule of the repository active, against an in-memory sensor context.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SensorBenchmark {
+
+  @Param({"200"})
+  public int files;
+
+  @Param({"500"})
+  public int linesPerFile;
+
+  @Param({"1", "4"})
+  public int threads;
+
+  private Path baseDir;
+  private SensorContextTester context;
+  private DelphiSensor sensor;
+
+  @Setup(Level.Invocation)
+  public void setUp() throws IOException {
+    baseDir = Files.createTempDirectory("delphi-sensor-benchmark");
+    context = GeneratedProject.create(baseDir, files, linesPerFile, DelphiSourceGenerator.Shape.REALISTIC, Seeds.SOURCES);
+    MapSettings settings = new MapSettings();
+    settings.setProperty(DelphiPlugin.ANALYSIS_THREADS, threads);
+    context.setSettings(settings);
+
+    ActiveRules activeRules = allRules();
+    context.setActiveRules(activeRules);
+    sensor = new DelphiSensor(new CheckFactory(activeRules), new NoOpFileLinesContextFactory(), context.fileSystem(), new NoSonarFilter());
+  }
+
+  @TearDown(Level.Invocation)
+  public void tearDown() {
+    FileUtils.deleteQuietly(baseDir.toFile());
+  }
+
+  @Benchmark
+  public SensorContextTester execute() {
+    sensor.execute(context);
+    return context;
+  }
+
+  static ActiveRules allRules() {
+    ActiveRulesBuilder builder = new ActiveRulesBuilder();
+    for (Class<?> checkClass : CheckList.getChecks()) {
+      Rule rule = AnnotationUtils.getAnnotation(checkClass, Rule.class);
+      builder.create(RuleKey.of(CheckList.REPOSITORY_KEY, rule.key())).activate();
+    }
+    return builder.build();
+  }
+
+  static class NoOpFileLinesContextFactory implements FileLinesContextFactory {
+    @Override
+    public FileLinesContext createFor(InputFile inputFile) {
+      return new FileLinesContext() {
+        @Override
+        public void setIntValue(String metricKey, int line, int value) {
+          // measures are not needed by the benchmark
+        }
+
+        @Override
+        public Integer getIntValue(String metricKey, int line) {
+          return null;
+        }
+
+        @Override
+        public void setStringValue(String metricKey, int line, String value) {
+          // measures are not needed by the benchmark
+        }
+
+        @Override
+        public String getStringValue(String metricKey, int line) {
+          return null;
+        }
+
+        @Override
+        public void save() {
+          // measures are not needed by the benchmark
+        }
+      };
+    }
+  }
+
+}
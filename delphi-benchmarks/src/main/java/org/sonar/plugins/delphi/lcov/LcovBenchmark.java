@@ -0,0 +1,95 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.lcov;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.delphi.benchmarks.DelphiSourceGenerator;
+import org.sonar.delphi.benchmarks.GeneratedProject;
+import org.sonar.delphi.benchmarks.LcovReportGenerator;
+import org.sonar.delphi.benchmarks.Seeds;
+
+/**
+ * LCOV import of large reports. Lives in the package of {@link LCOVParser} to call it directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class LcovBenchmark {
+
+  @Param({"300"})
+  public int totalMegabytes;
+
+  @Param({"1", "10"})
+  public int reports;
+
+  @Param({"1", "4"})
+  public int threads;
+
+  private Path baseDir;
+  private SensorContextTester context;
+  private File[] reportFiles;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    baseDir = Files.createTempDirectory("delphi-lcov-benchmark");
+    context = GeneratedProject.create(baseDir, 500, 800, DelphiSourceGenerator.Shape.REALISTIC, Seeds.SOURCES);
+
+    reportFiles = new File[reports];
+    long bytesPerReport = (long) totalMegabytes * 1024 * 1024 / reports;
+    for (int i = 0; i < reports; i++) {
+      Path report = baseDir.resolve("lcov-" + i + ".info");
+      LcovReportGenerator.write(report, context.fileSystem().inputFiles(context.fileSystem().predicates().all()), bytesPerReport, Seeds.LCOV + i);
+      reportFiles[i] = report.toFile();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    FileUtils.deleteQuietly(baseDir.toFile());
+  }
+
+  @Benchmark
+  public int parse() {
+    return LCOVParser.create(context, threads, reportFiles).coverageByFile().size();
+  }
+
+}
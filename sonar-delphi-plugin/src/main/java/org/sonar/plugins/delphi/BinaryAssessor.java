@@ -0,0 +1,63 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi;
+
+/**
+ * Detects binary files which were indexed as Delphi sources, e.g. compiled units or resources with a Delphi suffix.
+ * <p>
+ * The assessment is made on a bounded prefix of the already decoded contents, so that files are not read again. It is
+ * stateless and can be shared between analysis threads.
+ */
+public class BinaryAssessor {
+
+  private static final int PREFIX_LENGTH = 4096;
+
+  /**
+   * Share of suspicious characters in the prefix above which the file is considered binary.
+   */
+  private static final double SUSPICIOUS_RATIO = 0.1;
+
+  public boolean isBinary(String contents) {
+    int length = Math.min(contents.length(), PREFIX_LENGTH);
+    int suspicious = 0;
+    for (int i = 0; i < length; i++) {
+      char c = contents.charAt(i);
+      if (c == '\u0000') {
+        return true;
+      }
+      if (isSuspicious(c)) {
+        suspicious++;
+      }
+    }
+    return length > 0 && suspicious > length * SUSPICIOUS_RATIO;
+  }
+
+  /**
+   * Control characters which do not appear in text, and the replacement character produced when decoding bytes which
+   * are invalid in the file encoding. Ctrl-Z is still used as end of file marker by old Pascal sources.
+   */
+  private static boolean isSuspicious(char c) {
+    if (c == '\uFFFD') {
+      return true;
+    }
+    return c < 0x20 && c != '\t' && c != '\n' && c != '\r' && c != '\f' && c != 0x1A;
+  }
+
+}
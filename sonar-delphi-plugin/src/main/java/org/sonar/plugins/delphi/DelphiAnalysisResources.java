@@ -0,0 +1,70 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi;
+
+import com.sonar.sslr.api.typed.ActionParser;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.sonar.api.batch.InstantiationStrategy;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.delphi.parser.DelphiParserBuilder;
+import org.sonar.plugins.delphi.api.tree.Tree;
+
+/**
+ * Parser and checks shared by the {@link DelphiSensor} of every module of a scan. Building the grammar and
+ * instantiating all the rules again for each module is a significant part of the analysis time of projects with many
+ * small modules.
+ * <p>
+ * Modules are analysed one after the other, so the shared parser and checks are never used by two sensors at once.
+ * Active rules and their parameters are the same for every module of a project.
+ */
+@ScannerSide
+@InstantiationStrategy(InstantiationStrategy.PER_BATCH)
+public class DelphiAnalysisResources {
+
+  private static final Logger LOG = Loggers.get(DelphiAnalysisResources.class);
+
+  private ActionParser<Tree> parser = null;
+  private DelphiChecks checks = null;
+
+  public synchronized ActionParser<Tree> parser() {
+    if (parser == null) {
+      long start = System.nanoTime();
+      parser = DelphiParserBuilder.createParser();
+      LOG.debug("Delphi parser created in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+    return parser;
+  }
+
+  /**
+   * Returns the checks created by {@code factory} for the first module.
+   */
+  public synchronized DelphiChecks checks(Supplier<DelphiChecks> factory) {
+    if (checks == null) {
+      long start = System.nanoTime();
+      checks = factory.get();
+      LOG.debug("Delphi checks created in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+    return checks;
+  }
+
+}
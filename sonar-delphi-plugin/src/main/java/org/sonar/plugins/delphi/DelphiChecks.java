@@ -19,11 +19,14 @@
  */
 package org.sonar.plugins.delphi;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
 import org.sonar.api.batch.rule.CheckFactory;
@@ -45,7 +48,13 @@ public class DelphiChecks {
   private static final Logger LOG = Loggers.get(DelphiSensor.class);
 
   private final CheckFactory checkFactory;
-  private Set<Checks<DelphiCheck>> checksByRepository = Sets.newHashSet();
+
+  /**
+   * Rule key of each check instance. Checks are compared by identity, as they do not override equals.
+   */
+  private final Map<DelphiCheck, RuleKey> ruleKeys = new IdentityHashMap<>();
+  private final List<SeCheck> seChecks = new ArrayList<>();
+  private final List<TreeVisitor> visitorChecks = new ArrayList<>();
 
   private DelphiChecks(CheckFactory checkFactory) {
     this.checkFactory = checkFactory;
@@ -56,9 +65,22 @@ public class DelphiChecks {
   }
 
   public DelphiChecks addChecks(String repositoryKey, Iterable<Class> checkClass) {
-    checksByRepository.add(checkFactory
-      .<DelphiChecks>create(repositoryKey)
-      .addAnnotatedChecks(checkClass));
+    Checks<DelphiCheck> checks = checkFactory
+      .<DelphiCheck>create(repositoryKey)
+      .addAnnotatedChecks(checkClass);
+
+    for (DelphiCheck check : checks.all()) {
+      if (ruleKeys.containsKey(check)) {
+        continue;
+      }
+      ruleKeys.put(check, checks.ruleKey(check));
+      if (check instanceof SeCheck) {
+        seChecks.add((SeCheck) check);
+      }
+      if (check instanceof TreeVisitor) {
+        visitorChecks.add((TreeVisitor) check);
+      }
+    }
 
     return this;
   }
@@ -81,50 +103,42 @@ public class DelphiChecks {
     return this;
   }
 
-  private List<DelphiChecks> all() {
-    List<DelphiChecks> allVisitors = Lists.newArrayList();
-
-    for (Checks<DelphiChecks> checks : checksByRepository) {
-      allVisitors.addAll(checks.all());
-    }
-
-    return allVisitors;
-  }
-
   public List<SeCheck> seChecks() {
-    List<SeCheck> checks = new ArrayList<>();
-    for (DelphiChecks check : all()) {
-      if (check instanceof SeCheck) {
-        checks.add((SeCheck) check);
-      }
-    }
-
-    return checks;
+    return Collections.unmodifiableList(seChecks);
   }
 
   public List<TreeVisitor> visitorChecks() {
-    List<TreeVisitor> checks = new ArrayList<>();
-    for (DelphiChecks check : all()) {
-      if (check instanceof TreeVisitor) {
-        checks.add((TreeVisitor) check);
-      }
-    }
+    return Collections.unmodifiableList(visitorChecks);
+  }
 
-    return checks;
+  /**
+   * Classes of the active checks, custom ones included.
+   */
+  public Set<Class<?>> checkClasses() {
+    Set<Class<?>> checkClasses = new HashSet<>();
+    for (DelphiCheck check : ruleKeys.keySet()) {
+      checkClasses.add(check.getClass());
+    }
+    return checkClasses;
   }
 
   @Nullable
-  public RuleKey ruleKeyFor(DelphiChecks check) {
-    RuleKey ruleKey;
-
-    for (Checks<DelphiChecks> checks : checksByRepository) {
-      ruleKey = checks.ruleKey(check);
+  public RuleKey ruleKeyFor(DelphiCheck check) {
+    return ruleKeys.get(check);
+  }
 
-      if (ruleKey != null) {
-        return ruleKey;
-      }
+  /**
+   * Same as {@link #ruleKeyFor} for checks known to be active, like the ones which raised an issue.
+   *
+   * @throws IllegalStateException if the check does not belong to any repository
+   */
+  public RuleKey ruleKey(DelphiCheck check) {
+    Preconditions.checkNotNull(check);
+    RuleKey ruleKey = ruleKeys.get(check);
+    if (ruleKey == null) {
+      throw new IllegalStateException("No rule key found for a rule");
     }
-    return null;
+    return ruleKey;
   }
 
-}
\ No newline at end of file
+}
@@ -19,17 +19,26 @@
  */
 package org.sonar.plugins.delphi;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.InputFileFilter;
 import org.sonar.api.config.Configuration;
 import org.sonar.api.utils.WildcardPattern;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 
 public class DelphiExclusionsFileFilter implements InputFileFilter {
 
-  private final Configuration configuration;
+  private static final Logger LOG = Loggers.get(DelphiExclusionsFileFilter.class);
+
+  private final Predicate<String> excluded;
+  private final AtomicInteger excludedFiles = new AtomicInteger();
 
   public DelphiExclusionsFileFilter(Configuration configuration) {
-    this.configuration = configuration;
+    this.excluded = compile(configuration.getStringArray(DelphiPlugin.DELPHI_EXCLUSIONS_KEY));
   }
 
   @Override
@@ -37,8 +46,92 @@ public class DelphiExclusionsFileFilter implements InputFileFilter {
     if (!DelphiLanguage.KEY.equals(inputFile.language())) {
       return true;
     }
-    String[] excludedPatterns = this.configuration.getStringArray(DelphiPlugin.DELPHI_EXCLUSIONS_KEY);
-    String relativePath = inputFile.uri().toString();
-    return !WildcardPattern.match(WildcardPattern.create(excludedPatterns), relativePath);
+    // patterns used to be matched against the URI only, relative ones are matched against the relative path
+    if (excluded.test(inputFile.relativePath()) || excluded.test(inputFile.uri().toString())) {
+      excludedFiles.incrementAndGet();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Logs the number of files excluded since the previous call, see {@link DelphiExclusionsSensor}.
+   */
+  void logExcludedFiles() {
+    int count = excludedFiles.getAndSet(0);
+    if (count > 0) {
+      LOG.info("{} Delphi file(s) excluded by {}", count, DelphiPlugin.DELPHI_EXCLUSIONS_KEY);
+    }
+  }
+
+  /**
+   * Combines the patterns into a single predicate on paths. Patterns of the common {@code **}{@code /dir/**}
+   * and {@code **}{@code /*.ext} forms are matched with plain string operations, the others with {@link WildcardPattern}.
+   */
+  static Predicate<String> compile(String[] patterns) {
+    List<String> directories = new ArrayList<>();
+    List<String> suffixes = new ArrayList<>();
+    List<String> others = new ArrayList<>();
+    for (String pattern : patterns) {
+      String trimmed = pattern.trim();
+      if (trimmed.isEmpty()) {
+        continue;
+      }
+      if (isDirectoryPattern(trimmed)) {
+        directories.add(trimmed.substring(2, trimmed.length() - 2));
+      } else if (isSuffixPattern(trimmed)) {
+        suffixes.add(trimmed.substring(4));
+      } else {
+        others.add(trimmed);
+      }
+    }
+
+    String[] directoryArray = directories.toArray(new String[0]);
+    String[] suffixArray = suffixes.toArray(new String[0]);
+    WildcardPattern[] otherPatterns = others.isEmpty() ? new WildcardPattern[0] : WildcardPattern.create(others.toArray(new String[0]));
+    return path -> {
+      String normalized = path.replace('\\', '/');
+      for (String directory : directoryArray) {
+        // directory is "/name/"
+        if (normalized.contains(directory) || normalized.startsWith(directory.substring(1))) {
+          return true;
+        }
+      }
+      for (String suffix : suffixArray) {
+        if (normalized.endsWith(suffix)) {
+          return true;
+        }
+      }
+      return otherPatterns.length > 0 && WildcardPattern.match(otherPatterns, normalized);
+    };
+  }
+
+  /**
+   * {@code **}{@code /name/**} where name contains no wildcard nor separator.
+   */
+  private static boolean isDirectoryPattern(String pattern) {
+    return pattern.length() > "**//**".length()
+      && pattern.startsWith("**/")
+      && pattern.endsWith("/**")
+      && isLiteral(pattern.substring(3, pattern.length() - 3));
+  }
+
+  /**
+   * {@code **}{@code /*.ext} where ext contains no wildcard nor separator.
+   */
+  private static boolean isSuffixPattern(String pattern) {
+    return pattern.length() > "**/*.".length()
+      && pattern.startsWith("**/*.")
+      && isLiteral(pattern.substring(5));
+  }
+
+  private static boolean isLiteral(String part) {
+    for (int i = 0; i < part.length(); i++) {
+      char c = part.charAt(i);
+      if (c == '*' || c == '?' || c == '/' || c == '\\') {
+        return false;
+      }
+    }
+    return true;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,48 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi;
+
+import org.sonar.api.batch.sensor.Sensor;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.SensorDescriptor;
+
+/**
+ * Reports the files excluded by {@link DelphiExclusionsFileFilter} once indexing is complete. Not restricted to the
+ * Delphi language, so that the count is also logged when every Delphi file of a module is excluded.
+ */
+public class DelphiExclusionsSensor implements Sensor {
+
+  private final DelphiExclusionsFileFilter exclusionsFileFilter;
+
+  public DelphiExclusionsSensor(DelphiExclusionsFileFilter exclusionsFileFilter) {
+    this.exclusionsFileFilter = exclusionsFileFilter;
+  }
+
+  @Override
+  public void describe(SensorDescriptor descriptor) {
+    descriptor.name("SonarDelphi Exclusions");
+  }
+
+  @Override
+  public void execute(SensorContext context) {
+    exclusionsFileFilter.logExcludedFiles();
+  }
+
+}
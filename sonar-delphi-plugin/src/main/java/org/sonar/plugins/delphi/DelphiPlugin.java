@@ -60,6 +60,40 @@ public class DelphiPlugin implements Plugin {
   public static final String IGNORE_HEADER_COMMENTS = PROPERTY_PREFIX + ".ignoreHeaderComments";
   public static final Boolean IGNORE_HEADER_COMMENTS_DEFAULT_VALUE = true;
 
+  public static final String ANALYSIS_THREADS = PROPERTY_PREFIX + ".analysis.threads";
+  public static final int ANALYSIS_THREADS_DEFAULT_VALUE = 1;
+
+  public static final String ANALYSIS_CACHE = PROPERTY_PREFIX + ".analysis.cache";
+  public static final Boolean ANALYSIS_CACHE_DEFAULT_VALUE = false;
+
+  public static final String ANALYSIS_CACHE_PATH = PROPERTY_PREFIX + ".analysis.cache.path";
+
+  public static final String ANALYSIS_MONITORING = PROPERTY_PREFIX + ".analysis.monitoring";
+  public static final Boolean ANALYSIS_MONITORING_DEFAULT_VALUE = false;
+
+  public static final String ANALYSIS_MONITORING_REPORT_PATH = PROPERTY_PREFIX + ".analysis.monitoring.reportPath";
+
+  public static final String FILE_TIMEOUT = PROPERTY_PREFIX + ".analysis.fileTimeout";
+  public static final long FILE_TIMEOUT_DEFAULT_VALUE = 0;
+
+  public static final String ANALYSIS_SYMBOLIC_EXECUTION_MAX_PROGRAM_STATES = PROPERTY_PREFIX + ".analysis.symbolicExecution.maxProgramStates";
+  public static final long ANALYSIS_SYMBOLIC_EXECUTION_MAX_PROGRAM_STATES_DEFAULT_VALUE = 100_000;
+
+  public static final String SLOWEST_FILES = PROPERTY_PREFIX + ".analysis.slowestFiles";
+  public static final int SLOWEST_FILES_DEFAULT_VALUE = 5;
+
+  public static final String ANALYSIS_LOW_MEMORY = PROPERTY_PREFIX + ".analysis.lowMemory";
+  public static final Boolean ANALYSIS_LOW_MEMORY_DEFAULT_VALUE = false;
+
+  public static final String ANALYSIS_CHANGED_FILES = PROPERTY_PREFIX + ".analysis.changedFiles";
+  public static final Boolean ANALYSIS_CHANGED_FILES_DEFAULT_VALUE = false;
+
+  public static final String ANALYSIS_CHANGED_FILES_DEPTH = PROPERTY_PREFIX + ".analysis.changedFiles.dependentsDepth";
+  public static final int ANALYSIS_CHANGED_FILES_DEPTH_DEFAULT_VALUE = 0;
+
+  public static final String SYMBOL_SNAPSHOT = PROPERTY_PREFIX + ".symbolSnapshot";
+  public static final String SYMBOL_SNAPSHOT_DEFAULT_VALUE = "";
+
   public static final String DELPHI_EXCLUSIONS_KEY = PROPERTY_PREFIX + ".exclusions";
   public static final String DELPHI_EXCLUSIONS_DEFAULT_VALUE = "**/bin/**,**/*.~*,**/*.bak*";
 
@@ -74,7 +108,9 @@ public class DelphiPlugin implements Plugin {
     context.addExtensions(
       DelphiLanguage.class,
       DelphiSensor.class,
+      DelphiAnalysisResources.class,
       DelphiExclusionsFileFilter.class,
+      DelphiExclusionsSensor.class,
       DelphiRulesDefinition.class,
       SonarWayRecommendedProfile.class,
       SonarWayProfile.class);
@@ -134,11 +170,150 @@ public class DelphiPlugin implements Plugin {
       PropertyDefinition.builder(DelphiPlugin.JS_EXCLUSIONS_KEY)
         .defaultValue(DELPHI_EXCLUSIONS_DEFAULT_VALUE)
         .name("Delphi Exclusions")
-        .description("List of file path patterns to be excluded from analysis of Delphi files.")
+        .description("List of file path patterns to be excluded from analysis of Delphi files. A file is excluded when "
+          + "a pattern matches either its path relative to the module base directory or its URI.")
         .onQualifiers(Qualifiers.MODULE, Qualifiers.PROJECT)
         .subCategory(GENERAL)
         .multiValues(true)
         .category(DELPHI_CATEGORY)
+        .build(),
+
+      PropertyDefinition.builder(DelphiPlugin.ANALYSIS_THREADS)
+        .defaultValue(String.valueOf(DelphiPlugin.ANALYSIS_THREADS_DEFAULT_VALUE))
+        .name("Analysis threads")
+        .description("Number of threads used to parse and scan Delphi files and to read LCOV reports. "
+          + "Use 0 to use one thread per available processor. Ignored in SonarLint.")
+        .onQualifiers(Qualifiers.MODULE, Qualifiers.PROJECT)
+        .subCategory(GENERAL)
+        .category(DELPHI_CATEGORY)
+        .type(PropertyType.INTEGER)
+        .build(),
+
+      PropertyDefinition.builder(DelphiPlugin.ANALYSIS_CACHE)
+        .defaultValue(DelphiPlugin.ANALYSIS_CACHE_DEFAULT_VALUE.toString())
+        .name("Analysis cache")
+        .description("True to cache the issues raised on each file and reuse them on the next analysis, instead of "
+          + "running the rules again, when neither the file nor the interface of a unit it uses, directly or not, "
+          + "changed. Unchanged files are still parsed for metrics, highlighting, NOSONAR comments and duplications. "
+          + "Ignored in SonarLint.")
+        .onQualifiers(Qualifiers.MODULE, Qualifiers.PROJECT)
+        .subCategory(GENERAL)
+        .category(DELPHI_CATEGORY)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+
+      PropertyDefinition.builder(DelphiPlugin.ANALYSIS_CACHE_PATH)
+        .name("Analysis cache directory")
+        .description("Directory (absolute or relative) where the analysis cache is stored, in one sub-directory per "
+          + "module. Defaults to a directory inside the scanner working directory; point it to a directory kept between "
+          + "builds if the working directory is cleaned.")
+        .onQualifiers(Qualifiers.MODULE, Qualifiers.PROJECT)
+        .subCategory(GENERAL)
+        .category(DELPHI_CATEGORY)
+        .build(),
+
+      PropertyDefinition.builder(DelphiPlugin.ANALYSIS_MONITORING)
+        .defaultValue(DelphiPlugin.ANALYSIS_MONITORING_DEFAULT_VALUE.toString())
+        .name("Analysis monitoring")
+        .description("True to measure time, calls and allocated memory of each analysis phase, visitor and rule, "
+          + "and log a summary at the end of the analysis.")
+        .onQualifiers(Qualifiers.MODULE, Qualifiers.PROJECT)
+        .subCategory(GENERAL)
+        .category(DELPHI_CATEGORY)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+
+      PropertyDefinition.builder(DelphiPlugin.ANALYSIS_MONITORING_REPORT_PATH)
+        .name("Analysis monitoring report")
+        .description("Path (absolute or relative) of a JSON file where analysis monitoring measures are written.")
+        .onQualifiers(Qualifiers.MODULE, Qualifiers.PROJECT)
+        .subCategory(GENERAL)
+        .category(DELPHI_CATEGORY)
+        .build(),
+
+      PropertyDefinition.builder(DelphiPlugin.FILE_TIMEOUT)
+        .defaultValue(String.valueOf(DelphiPlugin.FILE_TIMEOUT_DEFAULT_VALUE))
+        .name("File analysis timeout")
+        .description("Time budget, in seconds, for parsing and scanning a single file. A file exceeding it is skipped "
+          + "with an analysis error. The budget is checked between the analysis steps of a file and while the rules walk "
+          + "its syntax tree and its symbolic execution: parsing, and a rule which scans the tree by itself, are not "
+          + "interrupted and run to completion before the file is skipped. Use 0 for no limit.")
+        .onQualifiers(Qualifiers.MODULE, Qualifiers.PROJECT)
+        .subCategory(GENERAL)
+        .category(DELPHI_CATEGORY)
+        .type(PropertyType.INTEGER)
+        .build(),
+
+      PropertyDefinition.builder(DelphiPlugin.ANALYSIS_SYMBOLIC_EXECUTION_MAX_PROGRAM_STATES)
+        .defaultValue(String.valueOf(DelphiPlugin.ANALYSIS_SYMBOLIC_EXECUTION_MAX_PROGRAM_STATES_DEFAULT_VALUE))
+        .name("Symbolic execution budget")
+        .description("Maximum number of program states explored by the symbolic execution of a single routine. When a "
+          + "routine exceeds it, symbolic execution of its file is stopped and the file gets no issue from the rules "
+          + "based on symbolic execution. Use 0 for no limit.")
+        .onQualifiers(Qualifiers.MODULE, Qualifiers.PROJECT)
+        .subCategory(GENERAL)
+        .category(DELPHI_CATEGORY)
+        .type(PropertyType.INTEGER)
+        .build(),
+
+      PropertyDefinition.builder(DelphiPlugin.SLOWEST_FILES)
+        .defaultValue(String.valueOf(DelphiPlugin.SLOWEST_FILES_DEFAULT_VALUE))
+        .name("Slowest files report")
+        .description("Number of slowest files to log at the end of the analysis. Use 0 to disable the report.")
+        .onQualifiers(Qualifiers.MODULE, Qualifiers.PROJECT)
+        .subCategory(GENERAL)
+        .category(DELPHI_CATEGORY)
+        .type(PropertyType.INTEGER)
+        .build(),
+
+      PropertyDefinition.builder(DelphiPlugin.ANALYSIS_LOW_MEMORY)
+        .defaultValue(DelphiPlugin.ANALYSIS_LOW_MEMORY_DEFAULT_VALUE.toString())
+        .name("Low memory analysis")
+        .description("True to keep the heap usage of the analysis bounded by the largest file rather than by the "
+          + "project: files are analysed one at a time, issues are saved as soon as a file is analysed, and the syntax "
+          + "tree and visitor state of a file are released before the next one. The heap watermark is logged at the end "
+          + "of the analysis. Slower on multi-core machines, as it overrides the number of analysis threads.")
+        .onQualifiers(Qualifiers.MODULE, Qualifiers.PROJECT)
+        .subCategory(GENERAL)
+        .category(DELPHI_CATEGORY)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+
+      PropertyDefinition.builder(DelphiPlugin.ANALYSIS_CHANGED_FILES)
+        .defaultValue(DelphiPlugin.ANALYSIS_CHANGED_FILES_DEFAULT_VALUE.toString())
+        .name("Changed files analysis")
+        .description("True to run the rules, in pull request analyses, only on the files changed by the pull request "
+          + "and on the units which use them or used a deleted or renamed unit. Other files are still parsed for their "
+          + "metrics, highlighting, duplications and NOSONAR comments. Branch analyses, and analyses where the status "
+          + "of the files is not known, run the rules on all the files.")
+        .onQualifiers(Qualifiers.MODULE, Qualifiers.PROJECT)
+        .subCategory(GENERAL)
+        .category(DELPHI_CATEGORY)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+
+      PropertyDefinition.builder(DelphiPlugin.ANALYSIS_CHANGED_FILES_DEPTH)
+        .defaultValue(Integer.toString(DelphiPlugin.ANALYSIS_CHANGED_FILES_DEPTH_DEFAULT_VALUE))
+        .name("Changed files analysis depth")
+        .description("Number of intermediate units through which a unit can use a changed unit and still be analysed "
+          + "with the changed files. 0 only adds the units which use a changed unit directly, a negative value adds all "
+          + "the units which depend on it.")
+        .onQualifiers(Qualifiers.MODULE, Qualifiers.PROJECT)
+        .subCategory(GENERAL)
+        .category(DELPHI_CATEGORY)
+        .type(PropertyType.INTEGER)
+        .build(),
+
+      PropertyDefinition.builder(DelphiPlugin.SYMBOL_SNAPSHOT)
+        .defaultValue(DelphiPlugin.SYMBOL_SNAPSHOT_DEFAULT_VALUE)
+        .name("Standard library symbols")
+        .description("Path (absolute or relative) of a symbol snapshot of the Delphi standard library (RTL, VCL, FMX), "
+          + "which lets rules resolve the declarations of the standard units without parsing them. No snapshot is "
+          + "bundled with the plugin: generate one from the source directory of your Delphi installation with the "
+          + "org.sonar.plugins.delphi.units.SymbolSnapshotGenerator class of the plugin jar. Leave empty to disable.")
+        .onQualifiers(Qualifiers.MODULE, Qualifiers.PROJECT)
+        .subCategory(GENERAL)
+        .category(DELPHI_CATEGORY)
         .build()
     );
 
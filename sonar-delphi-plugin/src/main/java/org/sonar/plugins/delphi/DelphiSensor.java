@@ -20,27 +20,35 @@
 package org.sonar.plugins.delphi;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.sonar.sslr.api.RecognitionException;
 import com.sonar.sslr.api.typed.ActionParser;
+import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.api.SonarProduct;
 import org.sonar.api.batch.fs.FilePredicate;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.InputFile.Type;
-import org.sonar.api.batch.fs.TextRange;
 import org.sonar.api.batch.rule.CheckFactory;
 import org.sonar.api.batch.sensor.Sensor;
 import org.sonar.api.batch.sensor.SensorContext;
@@ -61,21 +69,33 @@ import org.sonar.delphi.highlighter.HighlighterVisitor;
 import org.sonar.delphi.metrics.MetricsVisitor;
 import org.sonar.delphi.metrics.NoSonarVisitor;
 import org.sonar.delphi.parser.DelphiParserBuilder;
+import org.sonar.delphi.se.SeCheck;
 import org.sonar.delphi.se.SeChecksDispatcher;
-import org.sonar.delphi.visitors.DelphiVisitorContext;
 import org.sonar.plugins.delphi.api.CustomDelphiRulesDefinition;
 import org.sonar.plugins.delphi.api.CustomRuleRepository;
 import org.sonar.plugins.delphi.api.DelphiCheck;
 import org.sonar.plugins.delphi.api.tree.ScriptTree;
 import org.sonar.plugins.delphi.api.tree.Tree;
-import org.sonar.plugins.delphi.api.visitors.FileIssue;
 import org.sonar.plugins.delphi.api.visitors.Issue;
-import org.sonar.plugins.delphi.api.visitors.IssueLocation;
-import org.sonar.plugins.delphi.api.visitors.LineIssue;
-import org.sonar.plugins.delphi.api.visitors.PreciseIssue;
 import org.sonar.plugins.delphi.api.visitors.TreeVisitor;
 import org.sonar.plugins.delphi.api.visitors.TreeVisitorContext;
+import org.sonar.plugins.delphi.cache.AnalysisCache;
+import org.sonar.plugins.delphi.cache.FileResultCache;
+import org.sonar.plugins.delphi.cache.RecordingNoSonarFilter;
 import org.sonar.plugins.delphi.minify.MinificationAssessor;
+import org.sonar.plugins.delphi.monitoring.AnalysisMonitor;
+import org.sonar.plugins.delphi.monitoring.AnalysisMonitor.Category;
+import org.sonar.plugins.delphi.monitoring.AnalysisMonitor.Measurement;
+import org.sonar.plugins.delphi.monitoring.HeapWatermark;
+import org.sonar.plugins.delphi.monitoring.SlowestFiles;
+import org.sonar.plugins.delphi.units.ChangeScope;
+import org.sonar.plugins.delphi.units.DependencyHashes;
+import org.sonar.plugins.delphi.units.SymbolSnapshot;
+import org.sonar.plugins.delphi.units.UnitDeclaration;
+import org.sonar.plugins.delphi.units.UnitDependencyGraph;
+import org.sonar.plugins.delphi.units.UnitDependencyIndexer;
+import org.sonar.plugins.delphi.units.UnitSummaries;
+import org.sonar.plugins.delphi.units.UnitsVisitorContext;
 import org.sonarsource.analyzer.commons.ProgressReport;
 
 import static org.sonar.plugins.delphi.DelphiPlugin.ESLINT_REPORT_PATHS;
@@ -84,6 +104,19 @@ public class DelphiSensor implements Sensor {
 
   private static final Logger LOG = Loggers.get(DelphiSensor.class);
 
+  private static final String SYMBOLIC_EXECUTION = "Symbolic execution";
+
+  /**
+   * Sources kept between the unit index and the analysis, in bytes of heap: two per char.
+   */
+  private static final long READ_AHEAD_MAX_BYTES = 64L * 1024 * 1024;
+
+  private static final long POOL_TERMINATION_TIMEOUT_SECONDS = 60;
+  private static final String PULL_REQUEST_KEY = "sonar.pullrequest.key";
+
+  private final CheckFactory checkFactory;
+  private final CustomDelphiRulesDefinition[] customRulesDefinition;
+  private final CustomRuleRepository[] customRuleRepositories;
   private final DelphiChecks checks;
   private final FileLinesContextFactory fileLinesContextFactory;
   private final FileSystem fileSystem;
@@ -92,26 +125,104 @@ public class DelphiSensor implements Sensor {
   private final ActionParser<Tree> parser;
   private final ActionParser<Tree> vueParser;
   private RuleKey parsingErrorRuleKey = null;
+  private AnalysisCache analysisCache = null;
+  private AnalysisMonitor monitor = AnalysisMonitor.disabled();
+  private SlowestFiles slowestFiles = new SlowestFiles(0);
+  private long fileTimeoutNanos = 0;
+  private IssueWriter issueWriter = null;
+
+  /**
+   * SonarLint analyses the contents of editors, which can differ from the files on disk.
+   */
+  private boolean readFromDisk = false;
+
+  /**
+   * Results of the files analysed again and again by SonarLint, and the fingerprint of the current settings.
+   */
+  private FileResultCache resultCache = null;
+  private String resultFingerprint = "";
+  private RecordingNoSonarFilter recordingNoSonarFilter = null;
+
+  /**
+   * Contents read by the unit index and not analysed yet, and their size on the heap.
+   */
+  private final Map<InputFile, String> readAheadContents = new ConcurrentHashMap<>();
+  private long readAheadBytes = 0;
+
+  private UnitDependencyGraph unitDependencies = UnitDependencyGraph.empty();
+  private UnitSummaries unitSummaries = UnitSummaries.empty();
+  private DependencyHashes dependencyHashes = new DependencyHashes(UnitDependencyGraph.empty(), UnitSummaries.empty());
+
+  /**
+   * Built when the analysis needs the unit index, {@code null} otherwise.
+   */
+  @Nullable
+  private UnitDependencyIndexer unitIndexer = null;
+
+  /**
+   * Files scanned by the checks in a pull request analysis, {@code null} when all files are.
+   */
+  private ChangeScope changeScope = null;
+
+  /**
+   * Bounds the heap usage by the largest file, see {@link DelphiPlugin#ANALYSIS_LOW_MEMORY}.
+   */
+  private boolean lowMemory = false;
+
+  /**
+   * Program states that symbolic execution may explore in a routine, see
+   * {@link DelphiPlugin#ANALYSIS_SYMBOLIC_EXECUTION_MAX_PROGRAM_STATES}.
+   */
+  private long symbolicExecutionMaxProgramStates = DelphiPlugin.ANALYSIS_SYMBOLIC_EXECUTION_MAX_PROGRAM_STATES_DEFAULT_VALUE;
+
+  /**
+   * Guards every write to the {@link SensorContext}, which must not be fed by several analysis threads at once.
+   */
+  private final Object sensorContextLock = new Object();
+
+  private final BinaryAssessor binaryAssessor = new BinaryAssessor();
 
   public DelphiSensor(
     CheckFactory checkFactory, FileLinesContextFactory fileLinesContextFactory, FileSystem fileSystem, NoSonarFilter noSonarFilter) {
-    this(checkFactory, fileLinesContextFactory, fileSystem, noSonarFilter, null, null);
+    this(checkFactory, fileLinesContextFactory, fileSystem, noSonarFilter, new DelphiAnalysisResources());
+  }
+
+  public DelphiSensor(
+    CheckFactory checkFactory, FileLinesContextFactory fileLinesContextFactory, FileSystem fileSystem, NoSonarFilter noSonarFilter,
+    DelphiAnalysisResources resources) {
+    this(checkFactory, fileLinesContextFactory, fileSystem, noSonarFilter, resources, null, null);
   }
 
   public DelphiSensor(
     CheckFactory checkFactory, FileLinesContextFactory fileLinesContextFactory, FileSystem fileSystem, NoSonarFilter noSonarFilter,
     @Nullable CustomDelphiRulesDefinition[] customRulesDefinition,
     @Nullable CustomRuleRepository[] customRuleRepositories) {
-    this.checks = DelphiChecks.createDelphiCheck(checkFactory)
-      .addChecks(CheckList.REPOSITORY_KEY, CheckList.getChecks())
-      .addCustomChecks(customRulesDefinition, customRuleRepositories);
+    this(checkFactory, fileLinesContextFactory, fileSystem, noSonarFilter, new DelphiAnalysisResources(), customRulesDefinition,
+      customRuleRepositories);
+  }
+
+  public DelphiSensor(
+    CheckFactory checkFactory, FileLinesContextFactory fileLinesContextFactory, FileSystem fileSystem, NoSonarFilter noSonarFilter,
+    DelphiAnalysisResources resources,
+    @Nullable CustomDelphiRulesDefinition[] customRulesDefinition,
+    @Nullable CustomRuleRepository[] customRuleRepositories) {
+    this.checkFactory = checkFactory;
+    this.customRulesDefinition = customRulesDefinition;
+    this.customRuleRepositories = customRuleRepositories;
+    this.checks = resources.checks(this::createChecks);
     this.fileLinesContextFactory = fileLinesContextFactory;
     this.fileSystem = fileSystem;
     this.noSonarFilter = noSonarFilter;
     this.mainFilePredicate = fileSystem.predicates().and(
       fileSystem.predicates().hasType(InputFile.Type.MAIN),
       fileSystem.predicates().hasLanguage(DelphiLanguage.KEY));
-    this.parser = DelphiParserBuilder.createParser();
+    this.parser = resources.parser();
+  }
+
+  private DelphiChecks createChecks() {
+    return DelphiChecks.createDelphiCheck(checkFactory)
+      .addChecks(CheckList.REPOSITORY_KEY, CheckList.getChecks())
+      .addCustomChecks(customRulesDefinition, customRuleRepositories);
   }
 
   @VisibleForTesting
@@ -119,16 +230,12 @@ public class DelphiSensor implements Sensor {
     SensorContext context, List<TreeVisitor> treeVisitors, Iterable<InputFile> inputFiles,
     ProductDependentExecutor executor, ProgressReport progressReport
   ) {
+    AnalysisWorker worker = new AnalysisWorker(parser, checks, treeVisitors, symbolicExecutionMaxProgramStates);
     boolean success = false;
     try {
       for (InputFile inputFile : inputFiles) {
-        if (context.isCancelled()) {
-          throw new CancellationException("Analysis interrupted because the SensorContext is in cancelled state");
-        }
-        if (!isExcluded(inputFile)) {
-          analyse(context, inputFile, executor, treeVisitors);
-        }
-        progressReport.nextFile();
+        checkCancelled(context);
+        analyseFile(context, inputFile, executor, worker, progressReport);
       }
       success = true;
     } catch (CancellationException e) {
@@ -138,6 +245,88 @@ public class DelphiSensor implements Sensor {
     }
   }
 
+  /**
+   * Same as {@link #analyseFiles} but spreads the files over a pool of {@code threads} workers. Each worker thread
+   * lazily builds its own parser, checks and visitors, as none of them is thread-safe.
+   */
+  @VisibleForTesting
+  protected void analyseFilesInParallel(
+    SensorContext context, Iterable<InputFile> inputFiles, ProductDependentExecutor executor,
+    ProgressReport progressReport, int threads
+  ) {
+    ThreadLocal<AnalysisWorker> workers = ThreadLocal.withInitial(
+      () -> createWorker(DelphiParserBuilder.createParser(), createChecks(), executor));
+    ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("delphi-analysis-%d")
+      .setDaemon(true)
+      .build());
+
+    boolean success = false;
+    try {
+      List<Future<?>> tasks = new ArrayList<>();
+      for (InputFile inputFile : inputFiles) {
+        tasks.add(pool.submit(() -> {
+          checkCancelled(context);
+          analyseFile(context, inputFile, executor, workers.get(), progressReport);
+        }));
+      }
+      for (Future<?> task : tasks) {
+        awaitTask(task);
+      }
+      success = true;
+    } catch (CancellationException e) {
+      LOG.debug(e.toString());
+    } finally {
+      shutdownAndAwait(pool);
+      stopProgressReport(progressReport, success);
+    }
+  }
+
+  /**
+   * Interrupts the remaining tasks of {@code pool} and waits for them, so that no worker still writes to the sensor
+   * context once the sensor returns.
+   */
+  private static void shutdownAndAwait(ExecutorService pool) {
+    pool.shutdownNow();
+    try {
+      if (!pool.awaitTermination(POOL_TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        LOG.warn("Delphi analysis threads did not stop within {} seconds", POOL_TERMINATION_TIMEOUT_SECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void awaitTask(Future<?> task) {
+    try {
+      task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AnalysisException("Analysis cancelled", e);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause());
+      throw new AnalysisException("Unable to analyse files", e.getCause());
+    }
+  }
+
+  private static void checkCancelled(SensorContext context) {
+    if (context.isCancelled()) {
+      throw new CancellationException("Analysis interrupted because the SensorContext is in cancelled state");
+    }
+  }
+
+  private void analyseFile(
+    SensorContext context, InputFile inputFile, ProductDependentExecutor executor, AnalysisWorker worker, ProgressReport progressReport
+  ) {
+    long startNanos = System.nanoTime();
+    analyse(context, inputFile, executor, worker, startNanos);
+    slowestFiles.add(inputFile, System.nanoTime() - startNanos);
+    // ProgressReport is not thread-safe either
+    synchronized (sensorContextLock) {
+      progressReport.nextFile();
+    }
+  }
+
   private static void stopProgressReport(ProgressReport progressReport, boolean success) {
     if (success) {
       progressReport.stop();
@@ -146,25 +335,79 @@ public class DelphiSensor implements Sensor {
     }
   }
 
-  private void analyse(SensorContext sensorContext, InputFile inputFile, ProductDependentExecutor executor, List<TreeVisitor> visitors) {
-    ActionParser<Tree> currentParser = this.parser;
+  private void analyse(SensorContext sensorContext, InputFile inputFile, ProductDependentExecutor executor, AnalysisWorker worker, long startNanos) {
     ScriptTree scriptTree;
 
     try {
-      scriptTree = (ScriptTree) currentParser.parse(inputFile.contents());
-      scanFile(sensorContext, inputFile, executor, visitors, scriptTree);
+      String contents;
+      try (Measurement ignored = monitor.start(Category.PHASE, AnalysisMonitor.READ_CONTENTS)) {
+        contents = readFromDisk ? readContents(worker, inputFile) : inputFile.contents();
+      }
+
+      if (isExcluded(inputFile, contents)) {
+        return;
+      }
+
+      String contentHash = analysisCache != null || resultCache != null ? AnalysisCache.contentHash(contents) : null;
+      FileResultCache.Entry previousResult = resultCache == null ? null
+        : resultCache.get(inputFile.uri().toString(), resultFingerprint, contentHash);
+      if (previousResult != null) {
+        replay(inputFile, previousResult);
+        return;
+      }
+
+      // the parser can't be stopped once started: a file already over budget is not parsed
+      checkTimeout(inputFile, startNanos);
+      try (Measurement ignored = monitor.start(Category.PHASE, AnalysisMonitor.PARSE)) {
+        scriptTree = (ScriptTree) worker.parser.parse(contents);
+      }
+
+      checkTimeout(inputFile, startNanos);
+      scanFile(sensorContext, inputFile, executor, worker, scriptTree, contentHash, startNanos);
+    } catch (FileTimeoutException e) {
+      LOG.warn(e.getMessage());
+      synchronized (sensorContextLock) {
+        processException(e, sensorContext, inputFile);
+      }
     } catch (RecognitionException e) {
       checkInterrupted(e);
       LOG.error("Unable to parse file: " + inputFile.uri());
       LOG.error(e.getMessage());
-      processRecognitionException(e, sensorContext, inputFile);
+      synchronized (sensorContextLock) {
+        processRecognitionException(e, sensorContext, inputFile);
+      }
     } catch (Exception e) {
       checkInterrupted(e);
-      processException(e, sensorContext, inputFile);
+      synchronized (sensorContextLock) {
+        processException(e, sensorContext, inputFile);
+      }
       LOG.error("Unable to analyse file: " + inputFile.uri(), e);
+    } finally {
+      // also after a failure, which would otherwise keep the tree of the file alive until the next file
+      if (lowMemory) {
+        worker.releaseFile(executor);
+      }
+    }
+  }
+
+  /**
+   * The time budget of a file is checked between analysis steps and during the walk of the subscription checks, and
+   * bounds symbolic execution: other steps which already started, like parsing, are not interrupted, so a file can
+   * exceed its budget by the time it takes to parse it. Nothing has been saved for the file, nor cached, when the
+   * budget is exceeded.
+   */
+  private void checkTimeout(InputFile inputFile, long startNanos) {
+    long elapsedNanos = System.nanoTime() - startNanos;
+    if (fileTimeoutNanos > 0 && elapsedNanos > fileTimeoutNanos) {
+      throw timeout(inputFile, elapsedNanos);
     }
   }
 
+  private FileTimeoutException timeout(InputFile inputFile, long elapsedNanos) {
+    return new FileTimeoutException(String.format("Analysis of %s was aborted after %d ms, exceeding the time budget of %d ms",
+      inputFile, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), TimeUnit.NANOSECONDS.toMillis(fileTimeoutNanos)));
+  }
+
   private static void checkInterrupted(Exception e) {
     Throwable cause = Throwables.getRootCause(e);
     if (cause instanceof InterruptedException || cause instanceof InterruptedIOException) {
@@ -202,78 +445,138 @@ public class DelphiSensor implements Sensor {
       .save();
   }
 
-  private void scanFile(SensorContext sensorContext, InputFile inputFile, ProductDependentExecutor executor, List<TreeVisitor> visitors, ScriptTree scriptTree) {
-    DelphiVisitorContext context = new DelphiVisitorContext(scriptTree, inputFile, sensorContext.config());
+  private void scanFile(
+    SensorContext sensorContext, InputFile inputFile, ProductDependentExecutor executor, AnalysisWorker worker, ScriptTree scriptTree,
+    @Nullable String contentHash, long startNanos
+  ) {
+    UnitsVisitorContext context;
+    try (Measurement ignored = monitor.start(Category.PHASE, AnalysisMonitor.VISITOR_CONTEXT)) {
+      context = new UnitsVisitorContext(scriptTree, inputFile, sensorContext.config(), unitDependencies, unitSummaries);
+    }
+
+    String entryHash = null;
+    List<IssueRecord> cachedIssues = null;
+    if (changeScope != null && !changeScope.contains(inputFile)) {
+      // out of the scope of the pull request, only the product visitors save the metrics, highlighting, CPD tokens and
+      // NOSONAR lines of the file
+      cachedIssues = Collections.emptyList();
+    } else if (analysisCache != null && contentHash != null && isIndexed(inputFile, contentHash)) {
+      // a unit which uses a changed unit can get other issues with the same contents
+      entryHash = AnalysisCache.entryHash(contentHash, dependencyHash(inputFile));
+      cachedIssues = analysisCache.issues(inputFile, entryHash);
+    }
 
     List<Issue> fileIssues = new ArrayList<>();
+    List<Integer> sensorVisitors = new ArrayList<>();
 
-    for (TreeVisitor visitor : visitors) {
-      if (visitor instanceof DelphiCheck) {
-        fileIssues.addAll(((DelphiCheck) visitor).scanFile(context));
-      } else {
-        visitor.scanTree(context);
+    List<IssueRecord> seIssueRecords = null;
+
+    try (Measurement ignoredScan = monitor.start(Category.PHASE, AnalysisMonitor.SCAN)) {
+      if (cachedIssues == null && !worker.dispatcher.isEmpty()) {
+        checkTimeout(inputFile, startNanos);
+        // subscription checks share a single walk of the tree, the dispatcher measures each of them
+        fileIssues.addAll(worker.dispatcher.scanFile(context, monitor, () -> checkTimeout(inputFile, startNanos)));
+      }
+      for (int i = 0; i < worker.visitors.size(); i++) {
+        TreeVisitor visitor = worker.visitors.get(i);
+        if (visitor instanceof DelphiCheck) {
+          if (cachedIssues == null) {
+            checkTimeout(inputFile, startNanos);
+            try (Measurement ignored = monitor.start(Category.CHECK, worker.visitorNames.get(i))) {
+              fileIssues.addAll(((DelphiCheck) visitor).scanFile(context));
+            }
+          }
+        } else {
+          // metrics, highlighting, CPD and NOSONAR visitors save their results directly in the sensor context
+          sensorVisitors.add(i);
+        }
+      }
+      if (cachedIssues == null && worker.seDispatcher != null) {
+        checkTimeout(inputFile, startNanos);
+        seIssueRecords = runSymbolicExecution(inputFile, worker, context, startNanos);
       }
     }
 
-    saveFileIssues(sensorContext, fileIssues, inputFile);
-    executor.highlightSymbols(inputFile, context);
-  }
-
-  private void saveFileIssues(SensorContext sensorContext, List<Issue> fileIssues, InputFile inputFile) {
-    for (Issue issue : fileIssues) {
-      RuleKey ruleKey = ruleKey(issue.check());
-      if (issue instanceof FileIssue) {
-        saveFileIssue(sensorContext, inputFile, ruleKey, (FileIssue) issue);
-      } else if (issue instanceof LineIssue) {
-        saveLineIssue(sensorContext, inputFile, ruleKey, (LineIssue) issue);
-      } else {
-        savePreciseIssue(sensorContext, inputFile, ruleKey, (PreciseIssue) issue);
+    List<IssueRecord> issueRecords = cachedIssues;
+    if (issueRecords == null) {
+      issueRecords = issueRecords(fileIssues, worker.checks);
+      if (seIssueRecords != null) {
+        issueRecords.addAll(seIssueRecords);
       }
     }
-  }
-
-  private static void savePreciseIssue(SensorContext sensorContext, InputFile inputFile, RuleKey ruleKey, PreciseIssue issue) {
-    NewIssue newIssue = sensorContext.newIssue();
 
-    newIssue
-      .forRule(ruleKey)
-      .at(newLocation(inputFile, newIssue, issue.primaryLocation()));
+    checkTimeout(inputFile, startNanos);
+    if (cachedIssues == null && analysisCache != null && entryHash != null) {
+      analysisCache.put(inputFile, entryHash, issueRecords);
+    }
+    issueWriter.write(inputFile, issueRecords);
+    synchronized (sensorContextLock) {
+      for (int i : sensorVisitors) {
+        try (Measurement ignored = monitor.start(Category.VISITOR, worker.visitorNames.get(i))) {
+          worker.visitors.get(i).scanTree(context);
+        }
+      }
 
-    if (issue.cost() != null) {
-      newIssue.gap(issue.cost());
+      try (Measurement ignored = monitor.start(Category.PHASE, AnalysisMonitor.HIGHLIGHT_SYMBOLS)) {
+        executor.highlightSymbols(inputFile, context);
+      }
     }
 
-    for (IssueLocation secondary : issue.secondaryLocations()) {
-      newIssue.addLocation(newLocation(inputFile, newIssue, secondary));
+    if (resultCache != null && recordingNoSonarFilter != null && contentHash != null) {
+      resultCache.put(inputFile.uri().toString(), resultFingerprint, contentHash, issueRecords,
+        recordingNoSonarFilter.take(inputFile));
     }
-    newIssue.save();
   }
 
-  private static NewIssueLocation newLocation(InputFile inputFile, NewIssue issue, IssueLocation location) {
-    TextRange range = inputFile.newRange(
-      location.startLine(), location.startLineOffset(), location.endLine(), location.endLineOffset());
+  /**
+   * The dependency hash of a file comes from the unit index, which is only valid for the contents it saw of the file.
+   */
+  private boolean isIndexed(InputFile inputFile, String contentHash) {
+    return unitIndexer == null || unitIndexer.matchesIndex(inputFile, contentHash);
+  }
+
+  private String dependencyHash(InputFile inputFile) {
+    UnitDeclaration declaration = unitDependencies.declarationOf(inputFile.relativePath());
+    return declaration == null ? "" : dependencyHashes.of(declaration.name());
+  }
 
-    NewIssueLocation newLocation = issue.newLocation()
-      .on(inputFile)
-      .at(range);
+  /**
+   * Reports the results of a previous SonarLint analysis of the same contents of a file.
+   */
+  private void replay(InputFile inputFile, FileResultCache.Entry previousResult) {
+    issueWriter.write(inputFile, previousResult.issues());
+    synchronized (sensorContextLock) {
+      noSonarFilter.noSonarInFile(inputFile, previousResult.noSonarLines());
+    }
+  }
 
-    if (location.message() != null) {
-      newLocation.message(location.message());
+  /**
+   * Runs the symbolic execution checks of a file on the analysis thread, after the other checks. The
+   * {@link SymbolicExecutionBudget} of the worker stops it from within when a routine explores too many program states,
+   * then the file gets no symbolic execution issue, or when the file exceeds its time budget.
+   */
+  private List<IssueRecord> runSymbolicExecution(InputFile inputFile, AnalysisWorker worker, TreeVisitorContext context, long startNanos) {
+    worker.seBudget.startFile(() -> checkTimeout(inputFile, startNanos));
+    try (Measurement ignored = monitor.start(Category.CHECK, SYMBOLIC_EXECUTION)) {
+      return issueRecords(worker.seDispatcher.scanFile(context), worker.checks);
+    } catch (SymbolicExecutionBudget.BudgetExceededException e) {
+      LOG.warn("{}, no symbolic execution issue is reported on {}", e.getMessage(), inputFile);
+      return new ArrayList<>();
+    } finally {
+      worker.seBudget.endFile();
     }
-    return newLocation;
   }
 
-  private RuleKey ruleKey(DelpiCheck check) {
-    Preconditions.checkNotNull(check);
-    RuleKey ruleKey = checks.ruleKeyFor(check);
-    if (ruleKey == null) {
-      throw new IllegalStateException("No rule key found for a rule");
+  private static List<IssueRecord> issueRecords(List<Issue> fileIssues, DelphiChecks checks) {
+    List<IssueRecord> issueRecords = new ArrayList<>(fileIssues.size());
+    for (Issue issue : fileIssues) {
+      issueRecords.add(IssueRecord.create(checks.ruleKey(issue.check()), issue));
     }
-    return ruleKey;
+    return issueRecords;
   }
 
-  public boolean isExcluded(InputFile file) {
-    boolean isBinary = new BinaryAssessor().isBinary(file);
+  public boolean isExcluded(InputFile file, String contents) {
+    boolean isBinary = binaryAssessor.isBinary(contents);
     if (isBinary) {
       LOG.debug("File [" + file.uri() + "] looks like a binary file and will not be analyzed");
     }
@@ -294,10 +597,7 @@ public class DelphiSensor implements Sensor {
 
     ProductDependentExecutor executor = createProductDependentExecutor(context);
 
-    List<TreeVisitor> treeVisitors = Lists.newArrayList(); 
-    treeVisitors.addAll(executor.getProductDependentTreeVisitors());
-    treeVisitors.add(new SeChecksDispatcher(checks.seChecks()));
-    treeVisitors.addAll(checks.visitorChecks());
+    List<TreeVisitor> treeVisitors = treeVisitors(checks, executor);
 
     for (TreeVisitor check : treeVisitors) {
       if (check instanceof ParsingErrorCheck) {
@@ -307,6 +607,48 @@ public class DelphiSensor implements Sensor {
     }
 
     Iterable<InputFile> inputFiles = fileSystem.inputFiles(mainFilePredicate);
+
+    analysisCache = isAnalysisCacheEnabled(context) ? AnalysisCache.load(context, checks.checkClasses()) : null;
+    monitor = context.config().getBoolean(DelphiPlugin.ANALYSIS_MONITORING).orElse(DelphiPlugin.ANALYSIS_MONITORING_DEFAULT_VALUE)
+      ? AnalysisMonitor.enabled()
+      : AnalysisMonitor.disabled();
+    slowestFiles = new SlowestFiles(context.config().getInt(DelphiPlugin.SLOWEST_FILES).orElse(DelphiPlugin.SLOWEST_FILES_DEFAULT_VALUE));
+    fileTimeoutNanos = TimeUnit.SECONDS.toNanos(context.config().getLong(DelphiPlugin.FILE_TIMEOUT).orElse(DelphiPlugin.FILE_TIMEOUT_DEFAULT_VALUE));
+    symbolicExecutionMaxProgramStates = context.config().getLong(DelphiPlugin.ANALYSIS_SYMBOLIC_EXECUTION_MAX_PROGRAM_STATES)
+      .orElse(DelphiPlugin.ANALYSIS_SYMBOLIC_EXECUTION_MAX_PROGRAM_STATES_DEFAULT_VALUE);
+
+    readFromDisk = !isSonarLint(context);
+    resultCache = isSonarLint(context) ? FileResultCache.shared() : null;
+    if (resultCache != null) {
+      resultFingerprint = FileResultCache.fingerprint(context, checks.checkClasses());
+      resultCache.startAnalysis(resultFingerprint);
+    }
+    lowMemory = context.config().getBoolean(DelphiPlugin.ANALYSIS_LOW_MEMORY).orElse(DelphiPlugin.ANALYSIS_LOW_MEMORY_DEFAULT_VALUE);
+
+    UnitDependencyGraph previousUnitDependencies = UnitDependencyGraph.empty();
+    unitIndexer = null;
+    if (isUnitIndexNeeded(context)) {
+      SourceReader sourceReader = new SourceReader();
+      unitIndexer = new UnitDependencyIndexer(
+        AnalysisCache.directory(context).resolve(UnitDependencyIndexer.INDEX_FILE_NAME), inputFile -> readAhead(sourceReader, inputFile));
+      unitDependencies = unitIndexer.index(inputFiles);
+      unitSummaries = unitIndexer.summaries();
+      previousUnitDependencies = unitIndexer.previousGraph();
+    }
+    unitSummaries = unitSummaries.withLibrary(SymbolSnapshot.configuredFile(context)
+      .map(SymbolSnapshot::load)
+      .orElse(SymbolSnapshot.empty()));
+    dependencyHashes = new DependencyHashes(unitDependencies, unitSummaries);
+
+    changeScope = changeScope(context, inputFiles, previousUnitDependencies);
+    if (changeScope != null && analysisCache != null) {
+      for (InputFile inputFile : inputFiles) {
+        if (!changeScope.contains(inputFile)) {
+          analysisCache.keep(inputFile);
+        }
+      }
+    }
+
     Collection<String> files = StreamSupport.stream(inputFiles.spliterator(), false)
       .map(InputFile::toString)
       .collect(Collectors.toList());
@@ -314,12 +656,196 @@ public class DelphiSensor implements Sensor {
     ProgressReport progressReport = new ProgressReport("Report about progress of Delphi analyzer", TimeUnit.SECONDS.toMillis(10));
     progressReport.start(files);
 
-    analyseFiles(context, treeVisitors, inputFiles, executor, progressReport);
+    HeapWatermark heapWatermark = lowMemory ? HeapWatermark.start() : null;
+
+    int threads = lowMemory ? 1 : analysisThreads(context);
+    // SonarLint expects the issues of a file to be reported while the file is analysed, the low memory mode does not
+    // let them pile up in the queue, and a single analysis thread would only hand its issues over to the writer
+    issueWriter = isSonarLint(context) || threads == 1
+      ? IssueWriter.synchronous(context, sensorContextLock, monitor)
+      : IssueWriter.asynchronous(context, sensorContextLock, monitor);
+    try {
+      if (threads > 1) {
+        LOG.info("Analysing Delphi files with {} threads", threads);
+        analyseFilesInParallel(context, inputFiles, executor, progressReport, threads);
+      } else {
+        analyseFiles(context, treeVisitors, inputFiles, executor, progressReport);
+      }
+    } finally {
+      readAheadContents.clear();
+      readAheadBytes = 0;
+      issueWriter.close();
+    }
+
+    if (analysisCache != null) {
+      analysisCache.save();
+    }
+    if (unitIndexer != null) {
+      unitIndexer.saveStaleEntries();
+    }
+
+    slowestFiles.report();
+    if (heapWatermark != null) {
+      heapWatermark.report();
+    }
+    monitor.report(context.config().get(DelphiPlugin.ANALYSIS_MONITORING_REPORT_PATH)
+      .map(path -> context.fileSystem().resolvePath(path).toPath())
+      .orElse(null));
+  }
+
+  /**
+   * The unit index is read from and written to the cache directory, and only built for the features which need it: the
+   * analysis cache and the pull request scope. SonarLint analyses files one by one and does not see the whole project.
+   */
+  private static boolean isUnitIndexNeeded(SensorContext context) {
+    return isAnalysisCacheEnabled(context) || isChangeScopeEnabled(context);
+  }
+
+  /**
+   * Reads a file for the unit index and keeps its contents for its analysis, within {@link #READ_AHEAD_MAX_BYTES}, so
+   * that the analysis does not read it a second time.
+   */
+  private String readAhead(SourceReader sourceReader, InputFile inputFile) throws IOException {
+    String contents = sourceReader.read(inputFile);
+    long bytes = 2L * contents.length();
+    if (!lowMemory && readAheadBytes + bytes <= READ_AHEAD_MAX_BYTES) {
+      readAheadContents.put(inputFile, contents);
+      readAheadBytes += bytes;
+    }
+    return contents;
+  }
+
+  private String readContents(AnalysisWorker worker, InputFile inputFile) throws IOException {
+    String contents = readAheadContents.remove(inputFile);
+    return contents != null ? contents : worker.sourceReader.read(inputFile);
+  }
+
+  /**
+   * Files scanned by the checks in a pull request analysis, see {@link DelphiPlugin#ANALYSIS_CHANGED_FILES}, or
+   * {@code null} to scan all the files. Branch analyses also set the status of the files, but must raise the issues of
+   * all the files.
+   */
+  @CheckForNull
+  private ChangeScope changeScope(
+    SensorContext context, Iterable<InputFile> inputFiles, UnitDependencyGraph previousUnitDependencies
+  ) {
+    if (!isChangeScopeEnabled(context)) {
+      return null;
+    }
+    if (!context.config().get(PULL_REQUEST_KEY).isPresent()) {
+      LOG.debug("Not a pull request analysis, all Delphi files are scanned by the rules");
+      return null;
+    }
+    int depth = context.config().getInt(DelphiPlugin.ANALYSIS_CHANGED_FILES_DEPTH).orElse(DelphiPlugin.ANALYSIS_CHANGED_FILES_DEPTH_DEFAULT_VALUE);
+    ChangeScope scope = ChangeScope.compute(inputFiles, unitDependencies, previousUnitDependencies, depth);
+    if (scope == null) {
+      LOG.info("Status of the Delphi files is unknown, all files are scanned by the rules");
+      return null;
+    }
+    LOG.info("Scanning {} changed Delphi files and {} units which use them with the rules", scope.changedCount(), scope.dependentCount());
+    return scope;
+  }
+
+  private static boolean isChangeScopeEnabled(SensorContext context) {
+    return !isSonarLint(context)
+      && context.config().getBoolean(DelphiPlugin.ANALYSIS_CHANGED_FILES).orElse(DelphiPlugin.ANALYSIS_CHANGED_FILES_DEFAULT_VALUE);
+  }
+
+  private static boolean isAnalysisCacheEnabled(SensorContext context) {
+    return !isSonarLint(context)
+      && context.config().getBoolean(DelphiPlugin.ANALYSIS_CACHE).orElse(DelphiPlugin.ANALYSIS_CACHE_DEFAULT_VALUE);
+  }
+
+  private AnalysisWorker createWorker(ActionParser<Tree> parser, DelphiChecks checks, ProductDependentExecutor executor) {
+    return new AnalysisWorker(parser, checks, treeVisitors(checks, executor), symbolicExecutionMaxProgramStates);
+  }
+
+  private static List<TreeVisitor> treeVisitors(DelphiChecks checks, ProductDependentExecutor executor) {
+    List<TreeVisitor> treeVisitors = Lists.newArrayList();
+    treeVisitors.addAll(executor.getProductDependentTreeVisitors());
+    treeVisitors.addAll(checks.visitorChecks());
+    return treeVisitors;
+  }
+
+  private static int analysisThreads(SensorContext context) {
+    if (isSonarLint(context)) {
+      return 1;
+    }
+    int threads = context.config().getInt(DelphiPlugin.ANALYSIS_THREADS).orElse(DelphiPlugin.ANALYSIS_THREADS_DEFAULT_VALUE);
+    return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Parser, checks and visitors used by a single analysis thread.
+   */
+  private static class AnalysisWorker {
+    private final ActionParser<Tree> parser;
+    private final DelphiChecks checks;
+    private final SubscriptionDispatcher dispatcher;
+
+    /**
+     * Runs the symbolic execution checks, after the {@link #seBudget}. {@code null} without symbolic execution checks.
+     */
+    @Nullable
+    private final SeChecksDispatcher seDispatcher;
+    private final SymbolicExecutionBudget seBudget;
+    private final SourceReader sourceReader = new SourceReader();
+
+    /**
+     * Visitors which are not run by the {@link #dispatcher} and scan the tree one after the other. The product
+     * dependent visitors come first.
+     */
+    private final List<TreeVisitor> visitors;
+
+    /**
+     * Name under which each visitor of {@link #visitors} is monitored: rule key for checks, class name otherwise.
+     */
+    private final List<String> visitorNames;
+
+    AnalysisWorker(ActionParser<Tree> parser, DelphiChecks checks, List<TreeVisitor> visitors, long maxProgramStates) {
+      this.parser = parser;
+      this.checks = checks;
+      this.seBudget = new SymbolicExecutionBudget(maxProgramStates);
+      this.seDispatcher = checks.seChecks().isEmpty() ? null : new SeChecksDispatcher(ImmutableList.<SeCheck>builder()
+        .add(seBudget)
+        .addAll(checks.seChecks())
+        .build());
+      this.dispatcher = new SubscriptionDispatcher(visitors, this::monitoredName);
+      this.visitors = new ArrayList<>(dispatcher.otherVisitors());
+      this.visitorNames = new ArrayList<>(this.visitors.size());
+      for (TreeVisitor visitor : this.visitors) {
+        visitorNames.add(monitoredName(visitor));
+      }
+    }
+
+    private String monitoredName(TreeVisitor visitor) {
+      RuleKey ruleKey = visitor instanceof DelphiCheck ? checks.ruleKeyFor((DelphiCheck) visitor) : null;
+      String className = visitor.getClass().getSimpleName();
+      return ruleKey == null ? className : (ruleKey + " (" + className + ")");
+    }
+
+    /**
+     * Releases what the visitors still reference of the last analysed file. Highlighting, CPD and metrics visitors
+     * keep per file state, so they are replaced by new instances.
+     */
+    void releaseFile(ProductDependentExecutor executor) {
+      dispatcher.releaseFile();
+      if (seDispatcher != null) {
+        seDispatcher.setContext(null);
+        seDispatcher.issues().clear();
+      }
+      List<TreeVisitor> productVisitors = executor.getProductDependentTreeVisitors();
+      for (int i = 0; i < productVisitors.size(); i++) {
+        visitors.set(i, productVisitors.get(i));
+      }
+    }
   }
 
   private ProductDependentExecutor createProductDependentExecutor(SensorContext context) {
     if (isSonarLint(context)) {
-      return new SonarLintProductExecutor(noSonarFilter, context);
+      // the NOSONAR lines of a file are cached with its issues
+      recordingNoSonarFilter = new RecordingNoSonarFilter(noSonarFilter);
+      return new SonarLintProductExecutor(recordingNoSonarFilter, context);
     }
     return new SonarQubeProductExecutor(context, noSonarFilter, fileLinesContextFactory);
   }
@@ -394,40 +920,11 @@ public class DelphiSensor implements Sensor {
     return context.runtime().getProduct() == SonarProduct.SONARLINT;
   }
 
-  private static void saveLineIssue(SensorContext sensorContext, InputFile inputFile, RuleKey ruleKey, LineIssue issue) {
-    NewIssue newIssue = sensorContext.newIssue();
-
-    NewIssueLocation primaryLocation = newIssue.newLocation()
-      .message(issue.message())
-      .on(inputFile)
-      .at(inputFile.selectLine(issue.line()));
-
-    saveIssue(newIssue, primaryLocation, ruleKey, issue);
-  }
-
-  private static void saveFileIssue(SensorContext sensorContext, InputFile inputFile, RuleKey ruleKey, FileIssue issue) {
-    NewIssue newIssue = sensorContext.newIssue();
-
-    NewIssueLocation primaryLocation = newIssue.newLocation()
-      .message(issue.message())
-      .on(inputFile);
-
-    saveIssue(newIssue, primaryLocation, ruleKey, issue);
-  }
-
-  private static void saveIssue(NewIssue newIssue, NewIssueLocation primaryLocation, RuleKey ruleKey, Issue issue) {
-    newIssue
-      .forRule(ruleKey)
-      .at(primaryLocation);
-
-    if (issue.cost() != null) {
-      newIssue.gap(issue.cost());
+  static class AnalysisException extends RuntimeException {
+    AnalysisException(String message) {
+      super(message);
     }
 
-    newIssue.save();
-  }
-
-  static class AnalysisException extends RuntimeException {
     AnalysisException(String message, Throwable cause) {
       super(message, cause);
     }
@@ -0,0 +1,192 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.issue.NewIssue;
+import org.sonar.api.batch.sensor.issue.NewIssueLocation;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.plugins.delphi.api.visitors.FileIssue;
+import org.sonar.plugins.delphi.api.visitors.Issue;
+import org.sonar.plugins.delphi.api.visitors.IssueLocation;
+import org.sonar.plugins.delphi.api.visitors.LineIssue;
+import org.sonar.plugins.delphi.api.visitors.PreciseIssue;
+
+/**
+ * Self-contained copy of an {@link Issue} raised on a file. It references neither the check nor the tree,
+ * so it can be kept after the file has been analysed, written to disk and saved later on.
+ */
+public final class IssueRecord {
+
+  private enum Kind {
+    FILE, LINE, PRECISE
+  }
+
+  private final RuleKey ruleKey;
+  private final Kind kind;
+  @Nullable
+  private final Double cost;
+
+  /**
+   * Line of a line issue, or start line, start line offset, end line and end line offset of each location of a
+   * precise issue, primary location first.
+   */
+  private final int[] positions;
+
+  /**
+   * Message of each location, primary location first.
+   */
+  private final String[] messages;
+
+  private IssueRecord(RuleKey ruleKey, Kind kind, @Nullable Double cost, int[] positions, String[] messages) {
+    this.ruleKey = ruleKey;
+    this.kind = kind;
+    this.cost = cost;
+    this.positions = positions;
+    this.messages = messages;
+  }
+
+  public static IssueRecord create(RuleKey ruleKey, Issue issue) {
+    if (issue instanceof FileIssue) {
+      return new IssueRecord(ruleKey, Kind.FILE, issue.cost(), new int[0], new String[] {((FileIssue) issue).message()});
+    }
+    if (issue instanceof LineIssue) {
+      LineIssue lineIssue = (LineIssue) issue;
+      return new IssueRecord(ruleKey, Kind.LINE, issue.cost(), new int[] {lineIssue.line()}, new String[] {lineIssue.message()});
+    }
+
+    PreciseIssue preciseIssue = (PreciseIssue) issue;
+    List<IssueLocation> secondaryLocations = preciseIssue.secondaryLocations();
+    int[] positions = new int[(secondaryLocations.size() + 1) * 4];
+    String[] messages = new String[secondaryLocations.size() + 1];
+
+    copyLocation(preciseIssue.primaryLocation(), 0, positions, messages);
+    for (int i = 0; i < secondaryLocations.size(); i++) {
+      copyLocation(secondaryLocations.get(i), i + 1, positions, messages);
+    }
+    return new IssueRecord(ruleKey, Kind.PRECISE, issue.cost(), positions, messages);
+  }
+
+  private static void copyLocation(IssueLocation location, int index, int[] positions, String[] messages) {
+    positions[index * 4] = location.startLine();
+    positions[index * 4 + 1] = location.startLineOffset();
+    positions[index * 4 + 2] = location.endLine();
+    positions[index * 4 + 3] = location.endLineOffset();
+    messages[index] = location.message();
+  }
+
+  public RuleKey ruleKey() {
+    return ruleKey;
+  }
+
+  public void save(SensorContext context, InputFile inputFile) {
+    NewIssue newIssue = context.newIssue();
+
+    NewIssueLocation primaryLocation;
+    if (kind == Kind.FILE) {
+      primaryLocation = newIssue.newLocation()
+        .message(messages[0])
+        .on(inputFile);
+    } else if (kind == Kind.LINE) {
+      primaryLocation = newIssue.newLocation()
+        .message(messages[0])
+        .on(inputFile)
+        .at(inputFile.selectLine(positions[0]));
+    } else {
+      primaryLocation = newLocation(inputFile, newIssue, 0);
+      for (int i = 1; i < messages.length; i++) {
+        newIssue.addLocation(newLocation(inputFile, newIssue, i));
+      }
+    }
+
+    newIssue
+      .forRule(ruleKey)
+      .at(primaryLocation);
+
+    if (cost != null) {
+      newIssue.gap(cost);
+    }
+
+    newIssue.save();
+  }
+
+  private NewIssueLocation newLocation(InputFile inputFile, NewIssue issue, int index) {
+    NewIssueLocation newLocation = issue.newLocation()
+      .on(inputFile)
+      .at(inputFile.newRange(positions[index * 4], positions[index * 4 + 1], positions[index * 4 + 2], positions[index * 4 + 3]));
+
+    if (messages[index] != null) {
+      newLocation.message(messages[index]);
+    }
+    return newLocation;
+  }
+
+  public void writeTo(DataOutput out) throws IOException {
+    out.writeUTF(ruleKey.toString());
+    out.writeByte(kind.ordinal());
+    out.writeBoolean(cost != null);
+    if (cost != null) {
+      out.writeDouble(cost);
+    }
+    out.writeInt(positions.length);
+    for (int position : positions) {
+      out.writeInt(position);
+    }
+    out.writeInt(messages.length);
+    for (String message : messages) {
+      writeNullableString(out, message);
+    }
+  }
+
+  public static IssueRecord readFrom(DataInput in) throws IOException {
+    RuleKey ruleKey = RuleKey.parse(in.readUTF());
+    Kind kind = Kind.values()[in.readByte()];
+    Double cost = in.readBoolean() ? in.readDouble() : null;
+    int[] positions = new int[in.readInt()];
+    for (int i = 0; i < positions.length; i++) {
+      positions[i] = in.readInt();
+    }
+    String[] messages = new String[in.readInt()];
+    for (int i = 0; i < messages.length; i++) {
+      messages[i] = readNullableString(in);
+    }
+    return new IssueRecord(ruleKey, kind, cost, positions, messages);
+  }
+
+  private static void writeNullableString(DataOutput out, @Nullable String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  @CheckForNull
+  private static String readNullableString(DataInput in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+}
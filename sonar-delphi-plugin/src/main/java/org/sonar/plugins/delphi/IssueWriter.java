@@ -0,0 +1,224 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.delphi.DelphiSensor.AnalysisException;
+import org.sonar.plugins.delphi.monitoring.AnalysisMonitor;
+import org.sonar.plugins.delphi.monitoring.AnalysisMonitor.Category;
+import org.sonar.plugins.delphi.monitoring.AnalysisMonitor.Measurement;
+
+/**
+ * Saves the issues of analysed files in the {@link SensorContext}.
+ * <p>
+ * When asynchronous, issues are queued and saved in batches by a dedicated thread, so that analysis threads do not wait
+ * for the conversion and persistence of issues of the previous files. The queue is bounded: analysis threads block when
+ * the writer falls behind. {@link #close()} saves the remaining issues and must be called before the end of the sensor.
+ * If the writer thread stops early, because it is interrupted or fails, analysis threads get its failure instead of
+ * waiting on a queue which is not consumed anymore.
+ */
+final class IssueWriter implements AutoCloseable {
+
+  private static final Logger LOG = Loggers.get(IssueWriter.class);
+
+  private static final int QUEUE_CAPACITY = 256;
+  private static final int MAX_BATCH_SIZE = 32;
+  private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+  private static final FileIssues END = new FileIssues(null, new ArrayList<>());
+
+  private final SensorContext context;
+  private final Object sensorContextLock;
+  private final AnalysisMonitor monitor;
+  @Nullable
+  private final BlockingQueue<FileIssues> queue;
+  @Nullable
+  private final Thread writer;
+
+  private volatile boolean closed = false;
+  private volatile boolean stopped = false;
+  @Nullable
+  private volatile Throwable failure = null;
+
+  private IssueWriter(SensorContext context, Object sensorContextLock, AnalysisMonitor monitor, boolean asynchronous) {
+    this.context = context;
+    this.sensorContextLock = sensorContextLock;
+    this.monitor = monitor;
+    if (asynchronous) {
+      this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+      this.writer = new Thread(this::run, "delphi-issue-writer");
+      this.writer.setDaemon(true);
+      this.writer.start();
+    } else {
+      this.queue = null;
+      this.writer = null;
+    }
+  }
+
+  /**
+   * Issues are saved by the calling thread, under the {@code sensorContextLock}.
+   */
+  static IssueWriter synchronous(SensorContext context, Object sensorContextLock, AnalysisMonitor monitor) {
+    return new IssueWriter(context, sensorContextLock, monitor, false);
+  }
+
+  /**
+   * Issues are saved by a writer thread, under the {@code sensorContextLock}.
+   */
+  static IssueWriter asynchronous(SensorContext context, Object sensorContextLock, AnalysisMonitor monitor) {
+    return new IssueWriter(context, sensorContextLock, monitor, true);
+  }
+
+  void write(InputFile inputFile, List<IssueRecord> issueRecords) {
+    if (issueRecords.isEmpty()) {
+      return;
+    }
+    if (queue == null || closed) {
+      List<FileIssues> batch = new ArrayList<>(1);
+      batch.add(new FileIssues(inputFile, issueRecords));
+      save(batch);
+      return;
+    }
+    checkFailure();
+    enqueue(new FileIssues(inputFile, issueRecords));
+  }
+
+  @Override
+  public void close() {
+    if (queue == null || writer == null || closed) {
+      return;
+    }
+    closed = true;
+    try {
+      if (!stopped) {
+        enqueue(END);
+      }
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AnalysisException("Analysis cancelled", e);
+    }
+    // issues queued by an analysis thread which raced with close
+    List<FileIssues> remaining = new ArrayList<>();
+    queue.drainTo(remaining);
+    save(remaining);
+    checkFailure();
+  }
+
+  /**
+   * Waits for room in the queue as long as the writer thread runs, and fails with its failure once it has stopped.
+   */
+  private void enqueue(FileIssues fileIssues) {
+    try {
+      while (!queue.offer(fileIssues, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+        if (stopped) {
+          checkFailure();
+          throw new AnalysisException("The issue writer has stopped");
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AnalysisException("Analysis cancelled", e);
+    }
+  }
+
+  private void checkFailure() {
+    Throwable error = failure;
+    if (error instanceof Error) {
+      throw (Error) error;
+    }
+    if (error != null) {
+      throw (RuntimeException) error;
+    }
+  }
+
+  private void run() {
+    List<FileIssues> batch = new ArrayList<>(MAX_BATCH_SIZE);
+    boolean end = false;
+    while (!end) {
+      try {
+        batch.add(queue.take());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        failure = new AnalysisException("The issue writer was interrupted", e);
+        stopped = true;
+        return;
+      }
+      queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+      end = batch.remove(END);
+      if (failure == null) {
+        try {
+          save(batch);
+        } catch (Error e) {
+          // keep consuming the queue so that analysis threads are not blocked, the error is rethrown to them
+          failure = e;
+        }
+      }
+      batch.clear();
+    }
+  }
+
+  private void save(List<FileIssues> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    synchronized (sensorContextLock) {
+      try (Measurement ignored = monitor.start(Category.PHASE, AnalysisMonitor.SAVE_ISSUES)) {
+        for (FileIssues fileIssues : batch) {
+          save(fileIssues);
+        }
+      }
+    }
+  }
+
+  private void save(FileIssues fileIssues) {
+    try {
+      for (IssueRecord issueRecord : fileIssues.issueRecords) {
+        issueRecord.save(context, fileIssues.inputFile);
+      }
+    } catch (RuntimeException e) {
+      LOG.error("Unable to save issues of file: " + fileIssues.inputFile.uri(), e);
+      context.newAnalysisError()
+        .onFile(fileIssues.inputFile)
+        .message(e.getMessage())
+        .save();
+    }
+  }
+
+  private static class FileIssues {
+    private final InputFile inputFile;
+    private final List<IssueRecord> issueRecords;
+
+    FileIssues(@Nullable InputFile inputFile, List<IssueRecord> issueRecords) {
+      this.inputFile = inputFile;
+      this.issueRecords = issueRecords;
+    }
+  }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.fs.InputFile;
+
+/**
+ * Reads source files through byte and char buffers which are reused from one file to the next, instead of allocating
+ * both for each file. This is not zero-copy: the decoded characters are still copied once into the string which the
+ * parser takes, and that string is the only allocation proportional to the size of the file.
+ * <p>
+ * Files are decoded like the scanner does when it computes their line and offset metadata: with the encoding of the
+ * file, malformed input replaced, and a byte order mark of that encoding skipped. Decoding them any other way would
+ * shift the positions of issues and highlighting.
+ * <p>
+ * Not thread-safe: each analysis thread has its own reader.
+ */
+final class SourceReader {
+
+  /**
+   * Buffers needed by larger files are allocated for that file only, so that a single huge unit does not pin memory
+   * for the rest of the analysis.
+   */
+  private static final int MAX_POOLED_BYTES = 4 * 1024 * 1024;
+
+  private ByteBuffer bytes = ByteBuffer.allocate(64 * 1024);
+  private CharBuffer chars = CharBuffer.allocate(64 * 1024);
+
+  String read(InputFile inputFile) throws IOException {
+    ByteBuffer input = readBytes(inputFile.path());
+    Charset charset = inputFile.charset();
+    if (charset.equals(byteOrderMark(input))) {
+      input.position(byteOrderMarkLength(charset));
+    }
+    return decode(input, charset);
+  }
+
+  private ByteBuffer readBytes(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE - 8) {
+        throw new IOException("File is too large to be analysed: " + path);
+      }
+      ByteBuffer buffer = bytes;
+      if (buffer.capacity() < size) {
+        buffer = ByteBuffer.allocate((int) size);
+        if (size <= MAX_POOLED_BYTES) {
+          bytes = buffer;
+        }
+      }
+      buffer.clear();
+      // the file may change while it is read: stop at its size when it was opened, or at its end if it shrank
+      buffer.limit((int) size);
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        // keep reading
+      }
+      buffer.flip();
+      return buffer;
+    }
+  }
+
+  /**
+   * @return the encoding of the byte order mark at the start of {@code input}, {@code null} when there is none
+   */
+  @CheckForNull
+  private static Charset byteOrderMark(ByteBuffer input) {
+    if (startsWith(input, 0xEF, 0xBB, 0xBF)) {
+      return StandardCharsets.UTF_8;
+    }
+    if (startsWith(input, 0xFF, 0xFE)) {
+      return StandardCharsets.UTF_16LE;
+    }
+    if (startsWith(input, 0xFE, 0xFF)) {
+      return StandardCharsets.UTF_16BE;
+    }
+    return null;
+  }
+
+  private static int byteOrderMarkLength(Charset charset) {
+    return StandardCharsets.UTF_8.equals(charset) ? 3 : 2;
+  }
+
+  private static boolean startsWith(ByteBuffer input, int... mark) {
+    if (input.remaining() < mark.length) {
+      return false;
+    }
+    for (int i = 0; i < mark.length; i++) {
+      if ((input.get(i) & 0xFF) != mark[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private String decode(ByteBuffer input, Charset charset) throws CharacterCodingException {
+    CharsetDecoder decoder = charset.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    int capacity = (int) Math.ceil(input.remaining() * (double) decoder.maxCharsPerByte());
+    CharBuffer output = chars;
+    if (output.capacity() < capacity) {
+      output = CharBuffer.allocate(capacity);
+      if (capacity <= MAX_POOLED_BYTES) {
+        chars = output;
+      }
+    }
+    output.clear();
+
+    CoderResult result = decoder.decode(input, output, true);
+    if (result.isError()) {
+      result.throwException();
+    }
+    result = decoder.flush(output);
+    if (result.isError()) {
+      result.throwException();
+    }
+    output.flip();
+    return output.toString();
+  }
+
+}
@@ -0,0 +1,238 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.sonar.plugins.delphi.api.tree.Tree;
+import org.sonar.plugins.delphi.api.tree.lexical.SyntaxToken;
+import org.sonar.plugins.delphi.api.visitors.Issue;
+import org.sonar.plugins.delphi.api.visitors.SubscriptionVisitorCheck;
+import org.sonar.plugins.delphi.api.visitors.TreeVisitor;
+import org.sonar.plugins.delphi.api.visitors.TreeVisitorContext;
+import org.sonar.plugins.delphi.monitoring.AnalysisMonitor;
+import org.sonar.plugins.delphi.monitoring.AnalysisMonitor.Category;
+
+/**
+ * Runs all subscription based checks in a single walk of the tree, instead of one walk per check. Each node is only
+ * handed to the checks which subscribed to its kind.
+ * <p>
+ * Other visitors, like the double dispatch checks of custom rule repositories, keep scanning the tree by themselves and
+ * are returned by {@link #otherVisitors()}.
+ * <p>
+ * When the analysis is monitored, the time spent in each check is measured around each of its calls and recorded under
+ * the name of the check. The walk itself is then slower, so it is only timed on demand.
+ */
+final class SubscriptionDispatcher {
+
+  private static final SubscriptionVisitorCheck[] NO_CHECKS = new SubscriptionVisitorCheck[0];
+  private static final int[] NO_INDEXES = new int[0];
+  private static final Runnable NO_BUDGET = () -> { };
+
+  /**
+   * Number of visited nodes between two checks of the time budget of the file, minus one.
+   */
+  private static final int BUDGET_CHECK_MASK = 0x3FF;
+
+  private final List<SubscriptionVisitorCheck> checks = new ArrayList<>();
+  private final List<String> checkNames = new ArrayList<>();
+  private final List<TreeVisitor> otherVisitors = new ArrayList<>();
+  private final Map<Tree.Kind, SubscriptionVisitorCheck[]> checksByKind = new EnumMap<>(Tree.Kind.class);
+
+  /**
+   * Index in {@link #checks} of each check of {@link #checksByKind}, for the timed walk.
+   */
+  private final Map<Tree.Kind, int[]> checkIndexesByKind = new EnumMap<>(Tree.Kind.class);
+
+  private Runnable budgetCheck = NO_BUDGET;
+  private int visitedNodes = 0;
+
+  SubscriptionDispatcher(List<TreeVisitor> visitors, Function<TreeVisitor, String> monitoredName) {
+    Map<Tree.Kind, List<Integer>> subscriptions = new EnumMap<>(Tree.Kind.class);
+    for (TreeVisitor visitor : visitors) {
+      if (visitor instanceof SubscriptionVisitorCheck) {
+        SubscriptionVisitorCheck check = (SubscriptionVisitorCheck) visitor;
+        int index = checks.size();
+        checks.add(check);
+        checkNames.add(monitoredName.apply(check));
+        for (Tree.Kind kind : check.nodesToVisit()) {
+          subscriptions.computeIfAbsent(kind, k -> new ArrayList<>()).add(index);
+        }
+      } else {
+        otherVisitors.add(visitor);
+      }
+    }
+    // arrays keep the per node dispatch free of iterator allocations
+    subscriptions.forEach((kind, indexes) -> {
+      SubscriptionVisitorCheck[] kindChecks = new SubscriptionVisitorCheck[indexes.size()];
+      int[] kindIndexes = new int[indexes.size()];
+      for (int i = 0; i < kindChecks.length; i++) {
+        kindIndexes[i] = indexes.get(i);
+        kindChecks[i] = checks.get(kindIndexes[i]);
+      }
+      checksByKind.put(kind, kindChecks);
+      checkIndexesByKind.put(kind, kindIndexes);
+    });
+  }
+
+  boolean isEmpty() {
+    return checks.isEmpty();
+  }
+
+  List<TreeVisitor> otherVisitors() {
+    return Collections.unmodifiableList(otherVisitors);
+  }
+
+  /**
+   * Issues are returned in the order of the checks, then in the order in which each check raised them, as if the checks
+   * had scanned the file one after the other.
+   *
+   * @param budgetCheck run every thousand nodes or so, throws to abort the walk when the file exceeds its time budget
+   */
+  List<Issue> scanFile(TreeVisitorContext context, AnalysisMonitor monitor, Runnable budgetCheck) {
+    this.budgetCheck = budgetCheck;
+    this.visitedNodes = 0;
+    try {
+      return scanFile(context, monitor);
+    } finally {
+      this.budgetCheck = NO_BUDGET;
+    }
+  }
+
+  private List<Issue> scanFile(TreeVisitorContext context, AnalysisMonitor monitor) {
+    Tree topTree = context.getTopTree();
+    for (SubscriptionVisitorCheck check : checks) {
+      // checks accumulate their issues, the ones of the previous file have been collected already
+      check.issues().clear();
+      check.setContext(context);
+    }
+
+    if (monitor.isEnabled()) {
+      long[] nanos = new long[checks.size()];
+      for (int i = 0; i < checks.size(); i++) {
+        long start = System.nanoTime();
+        checks.get(i).visitFile(topTree);
+        nanos[i] += System.nanoTime() - start;
+      }
+      scanTimed(topTree, nanos);
+      for (int i = 0; i < checks.size(); i++) {
+        long start = System.nanoTime();
+        checks.get(i).leaveFile(topTree);
+        nanos[i] += System.nanoTime() - start;
+        monitor.record(Category.CHECK, checkNames.get(i), nanos[i]);
+      }
+    } else {
+      for (SubscriptionVisitorCheck check : checks) {
+        check.visitFile(topTree);
+      }
+      scan(topTree);
+      for (SubscriptionVisitorCheck check : checks) {
+        check.leaveFile(topTree);
+      }
+    }
+
+    List<Issue> issues = new ArrayList<>();
+    for (SubscriptionVisitorCheck check : checks) {
+      issues.addAll(check.issues());
+    }
+    return issues;
+  }
+
+  /**
+   * Drops the references that the checks keep on the last scanned file: its context, and through it its tree, and the
+   * issues raised on it.
+   */
+  void releaseFile() {
+    for (SubscriptionVisitorCheck check : checks) {
+      check.setContext(null);
+      check.issues().clear();
+    }
+  }
+
+  private void checkBudget() {
+    visitedNodes++;
+    if ((visitedNodes & BUDGET_CHECK_MASK) == 0) {
+      budgetCheck.run();
+    }
+  }
+
+  /**
+   * Like the walk of each subscription check, the trivia of tokens are not visited.
+   */
+  private static boolean isLeaf(Tree tree) {
+    return tree instanceof SyntaxToken;
+  }
+
+  private void scan(Tree tree) {
+    checkBudget();
+    SubscriptionVisitorCheck[] subscribers = checksByKind.getOrDefault(tree.getKind(), NO_CHECKS);
+    for (SubscriptionVisitorCheck check : subscribers) {
+      check.visitNode(tree);
+    }
+
+    if (!isLeaf(tree)) {
+      Iterator<Tree> children = tree.childrenIterator();
+      while (children.hasNext()) {
+        Tree child = children.next();
+        if (child != null) {
+          scan(child);
+        }
+      }
+    }
+
+    for (SubscriptionVisitorCheck check : subscribers) {
+      check.leaveNode(tree);
+    }
+  }
+
+  private void scanTimed(Tree tree, long[] nanos) {
+    checkBudget();
+    Tree.Kind kind = tree.getKind();
+    SubscriptionVisitorCheck[] subscribers = checksByKind.getOrDefault(kind, NO_CHECKS);
+    int[] indexes = checkIndexesByKind.getOrDefault(kind, NO_INDEXES);
+    for (int i = 0; i < subscribers.length; i++) {
+      long start = System.nanoTime();
+      subscribers[i].visitNode(tree);
+      nanos[indexes[i]] += System.nanoTime() - start;
+    }
+
+    if (!isLeaf(tree)) {
+      Iterator<Tree> children = tree.childrenIterator();
+      while (children.hasNext()) {
+        Tree child = children.next();
+        if (child != null) {
+          scanTimed(child, nanos);
+        }
+      }
+    }
+
+    for (int i = 0; i < subscribers.length; i++) {
+      long start = System.nanoTime();
+      subscribers[i].leaveNode(tree);
+      nanos[indexes[i]] += System.nanoTime() - start;
+    }
+  }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi;
+
+import org.sonar.delphi.se.ProgramState;
+import org.sonar.delphi.se.SeCheck;
+import org.sonar.delphi.se.points.ProgramPoint;
+import org.sonar.plugins.delphi.api.symbols.Scope;
+import org.sonar.plugins.delphi.api.tree.Tree;
+
+/**
+ * Bounds the symbolic execution of a file from within: the number of program states explored in each routine, which
+ * grows exponentially with the branches of the routine, and the time budget of the file.
+ * <p>
+ * It is registered as the first check of the {@link org.sonar.delphi.se.SeChecksDispatcher}, which calls it before the
+ * other checks at each program state. The dispatcher offers no way to skip a single routine, so exceeding the state
+ * budget stops the symbolic execution of the whole file with a {@link BudgetExceededException}.
+ */
+final class SymbolicExecutionBudget extends SeCheck {
+
+  private static final Runnable NO_TIME_CHECK = () -> { };
+
+  /**
+   * Number of explored program states between two checks of the time budget of the file, minus one.
+   */
+  private static final int TIME_CHECK_MASK = 0x3FF;
+
+  private final long maxProgramStates;
+  private Runnable timeCheck = NO_TIME_CHECK;
+  private long routineStates = 0;
+  private long fileStates = 0;
+
+  /**
+   * @param maxProgramStates per routine, 0 or less for no limit
+   */
+  SymbolicExecutionBudget(long maxProgramStates) {
+    this.maxProgramStates = maxProgramStates;
+  }
+
+  /**
+   * @param timeCheck run every thousand program states or so, throws to abort when the file exceeds its time budget
+   */
+  void startFile(Runnable timeCheck) {
+    this.timeCheck = timeCheck;
+    this.routineStates = 0;
+    this.fileStates = 0;
+  }
+
+  void endFile() {
+    this.timeCheck = NO_TIME_CHECK;
+  }
+
+  @Override
+  public void startOfExecution(Scope functionScope) {
+    routineStates = 0;
+  }
+
+  @Override
+  public void beforeBlockElement(ProgramState currentState, Tree element, ProgramPoint programPoint) {
+    routineStates++;
+    fileStates++;
+    if (maxProgramStates > 0 && routineStates > maxProgramStates) {
+      throw new BudgetExceededException(maxProgramStates);
+    }
+    if ((fileStates & TIME_CHECK_MASK) == 0) {
+      timeCheck.run();
+    }
+  }
+
+  static final class BudgetExceededException extends RuntimeException {
+    BudgetExceededException(long maxProgramStates) {
+      super("Symbolic execution of a routine explored more than " + maxProgramStates + " program states");
+    }
+  }
+
+}
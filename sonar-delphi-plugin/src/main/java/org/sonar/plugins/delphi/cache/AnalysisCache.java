@@ -0,0 +1,287 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.cache;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.delphi.DelphiPlugin;
+import org.sonar.plugins.delphi.IssueRecord;
+import org.sonar.plugins.delphi.units.SymbolSnapshot;
+
+/**
+ * On-disk cache of the issues raised by the checks on each file, so that unchanged files don't need to be
+ * scanned again by the checks on the next analysis.
+ * <p>
+ * Entries are keyed by file path and by an entry hash, which covers the contents of the file and the interfaces of the
+ * units of the project it uses, directly or not. The whole cache is discarded when the version of this plugin or of a
+ * custom rule plugin, the active rules, the settings the checks depend on or the symbol snapshot file change. Only the entries of the files seen during the current analysis
+ * are written back, so deleted files don't linger in the cache.
+ */
+public class AnalysisCache {
+
+  private static final Logger LOG = Loggers.get(AnalysisCache.class);
+
+  private static final int FORMAT_VERSION = 2;
+  private static final String CACHE_FILE_NAME = "issues.bin";
+  private static final String[] FINGERPRINT_PROPERTIES = {
+    DelphiPlugin.ENVIRONMENTS,
+    DelphiPlugin.GLOBALS};
+
+  private final Path cacheFile;
+  private final String fingerprint;
+  private final Map<String, Entry> previousEntries;
+  private final Map<String, Entry> currentEntries = new ConcurrentHashMap<>();
+  private final AtomicInteger hits = new AtomicInteger();
+
+  private AnalysisCache(Path cacheFile, String fingerprint, Map<String, Entry> previousEntries) {
+    this.cacheFile = cacheFile;
+    this.fingerprint = fingerprint;
+    this.previousEntries = previousEntries;
+  }
+
+  public static AnalysisCache load(SensorContext context, Collection<Class<?>> checkClasses) {
+    return load(directory(context).resolve(CACHE_FILE_NAME), fingerprint(context, checkClasses));
+  }
+
+  /**
+   * Directory where the data kept between analyses is stored. A configured directory is shared by all the modules of a
+   * scan, so each module gets its own sub-directory.
+   */
+  public static Path directory(SensorContext context) {
+    return context.config().get(DelphiPlugin.ANALYSIS_CACHE_PATH)
+      .map(path -> context.fileSystem().resolvePath(path).toPath().resolve(moduleDirectoryName(context.module().key())))
+      .orElse(context.fileSystem().workDir().toPath().resolve("delphi-cache"));
+  }
+
+  static String moduleDirectoryName(String moduleKey) {
+    return moduleKey.replaceAll("[^A-Za-z0-9._-]", "_");
+  }
+
+  static AnalysisCache load(Path cacheFile, String fingerprint) {
+    Map<String, Entry> entries = new HashMap<>();
+    if (Files.isRegularFile(cacheFile)) {
+      try (DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(Files.newInputStream(cacheFile))))) {
+        if (in.readInt() == FORMAT_VERSION && fingerprint.equals(in.readUTF())) {
+          readEntries(in, entries);
+        } else {
+          LOG.info("Delphi analysis cache is outdated and will be rebuilt");
+        }
+      } catch (IOException | RuntimeException e) {
+        LOG.warn("Unable to read Delphi analysis cache from " + cacheFile + ", all files will be analysed", e);
+        entries.clear();
+      }
+    }
+    LOG.debug("Loaded {} entries from Delphi analysis cache {}", entries.size(), cacheFile);
+    return new AnalysisCache(cacheFile, fingerprint, entries);
+  }
+
+  private static void readEntries(DataInputStream in, Map<String, Entry> entries) throws IOException {
+    int entryCount = in.readInt();
+    for (int i = 0; i < entryCount; i++) {
+      String key = in.readUTF();
+      String entryHash = in.readUTF();
+      int issueCount = in.readInt();
+      List<IssueRecord> issues = new ArrayList<>(issueCount);
+      for (int j = 0; j < issueCount; j++) {
+        issues.add(IssueRecord.readFrom(in));
+      }
+      entries.put(key, new Entry(entryHash, issues));
+    }
+  }
+
+  public static String contentHash(String contents) {
+    return Hashing.sha256().hashString(contents, StandardCharsets.UTF_8).toString();
+  }
+
+  /**
+   * Hash under which the issues of a file are cached, from its {@link #contentHash} and the
+   * {@link org.sonar.plugins.delphi.units.UnitSummaries#dependencyHash dependency hash} of its unit.
+   */
+  public static String entryHash(String contentHash, String dependencyHash) {
+    if (dependencyHash.isEmpty()) {
+      return contentHash;
+    }
+    return Hashing.sha256().newHasher()
+      .putString(contentHash, StandardCharsets.UTF_8)
+      .putString(dependencyHash, StandardCharsets.UTF_8)
+      .hash()
+      .toString();
+  }
+
+  /**
+   * Returns the issues previously raised on this file if neither its content nor the units it uses changed,
+   * {@code null} otherwise. A returned entry is kept for the next analysis.
+   */
+  @CheckForNull
+  public List<IssueRecord> issues(InputFile inputFile, String entryHash) {
+    String key = key(inputFile);
+    Entry entry = previousEntries.get(key);
+    if (entry == null || !entry.entryHash.equals(entryHash)) {
+      return null;
+    }
+    currentEntries.put(key, entry);
+    hits.incrementAndGet();
+    return entry.issues;
+  }
+
+  /**
+   * Keeps the previous entry of a file which is not analysed this time, like a file out of the scope of a pull request
+   * analysis.
+   */
+  public void keep(InputFile inputFile) {
+    String key = key(inputFile);
+    Entry entry = previousEntries.get(key);
+    if (entry != null) {
+      currentEntries.put(key, entry);
+    }
+  }
+
+  public void put(InputFile inputFile, String entryHash, List<IssueRecord> issues) {
+    currentEntries.put(key(inputFile), new Entry(entryHash, issues));
+  }
+
+  public void save() {
+    LOG.info("Delphi analysis cache: {}/{} files were not scanned again", hits.get(), currentEntries.size());
+    try {
+      Files.createDirectories(cacheFile.getParent());
+      Path tempFile = cacheFile.resolveSibling(CACHE_FILE_NAME + ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile))))) {
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(fingerprint);
+        writeEntries(out);
+      }
+      Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      LOG.warn("Unable to write Delphi analysis cache to " + cacheFile, e);
+    }
+  }
+
+  private void writeEntries(DataOutputStream out) throws IOException {
+    out.writeInt(currentEntries.size());
+    for (Map.Entry<String, Entry> e : currentEntries.entrySet()) {
+      out.writeUTF(e.getKey());
+      out.writeUTF(e.getValue().entryHash);
+      out.writeInt(e.getValue().issues.size());
+      for (IssueRecord issue : e.getValue().issues) {
+        issue.writeTo(out);
+      }
+    }
+  }
+
+  private static String key(InputFile inputFile) {
+    return inputFile.relativePath();
+  }
+
+  /**
+   * Hash of everything, besides the content of a file, which can change the issues raised on it.
+   */
+  static String fingerprint(SensorContext context, Collection<Class<?>> checkClasses) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    String pluginVersion = DelphiPlugin.class.getPackage().getImplementationVersion();
+    hasher.putString(String.valueOf(pluginVersion), StandardCharsets.UTF_8);
+
+    // custom rule plugins are released independently of this plugin
+    SortedSet<String> checkVersions = new TreeSet<>();
+    for (Class<?> checkClass : checkClasses) {
+      checkVersions.add(checkVersion(checkClass));
+    }
+    for (String checkVersion : checkVersions) {
+      hasher.putString(checkVersion, StandardCharsets.UTF_8);
+    }
+
+    List<ActiveRule> activeRules = new ArrayList<>(context.activeRules().findAll());
+    Collections.sort(activeRules, Comparator.comparing(rule -> rule.ruleKey().toString()));
+    for (ActiveRule activeRule : activeRules) {
+      hasher.putString(activeRule.ruleKey().toString(), StandardCharsets.UTF_8);
+      hasher.putString(new TreeMap<>(activeRule.params()).toString(), StandardCharsets.UTF_8);
+    }
+
+    for (String property : FINGERPRINT_PROPERTIES) {
+      hasher.putString(property, StandardCharsets.UTF_8);
+      for (String value : context.config().getStringArray(property)) {
+        hasher.putString(value, StandardCharsets.UTF_8);
+      }
+    }
+
+    // a snapshot is usually generated again at the same path for another compiler version
+    hasher.putString(SymbolSnapshot.configuredFile(context).map(SymbolSnapshot::fileVersion).orElse(""), StandardCharsets.UTF_8);
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Name, implementation version and bytecode hash of a check class. Custom rule plugins don't always set an
+   * implementation version, the bytecode hash still tells when the check itself changed.
+   */
+  private static String checkVersion(Class<?> checkClass) {
+    Package checkPackage = checkClass.getPackage();
+    String version = checkPackage == null ? null : checkPackage.getImplementationVersion();
+    String bytecodeHash = "";
+    try (InputStream bytecode = checkClass.getResourceAsStream("/" + checkClass.getName().replace('.', '/') + ".class")) {
+      if (bytecode != null) {
+        bytecodeHash = Hashing.sha256().hashBytes(ByteStreams.toByteArray(bytecode)).toString();
+      }
+    } catch (IOException e) {
+      LOG.debug("Unable to read the bytecode of " + checkClass.getName(), e);
+    }
+    return checkClass.getName() + ':' + version + ':' + bytecodeHash;
+  }
+
+  private static class Entry {
+    private final String entryHash;
+    private final List<IssueRecord> issues;
+
+    Entry(String entryHash, List<IssueRecord> issues) {
+      this.entryHash = entryHash;
+      this.issues = issues;
+    }
+  }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.plugins.delphi.DelphiPlugin;
+import org.sonar.plugins.delphi.IssueRecord;
+
+/**
+ * In-memory cache of what the analysis of a file in SonarLint produces: its issues and its NOSONAR lines. SonarLint
+ * analyses the same file again on every save, and a file whose contents did not change doesn't need to be parsed nor
+ * scanned again. It lives as long as the plugin class loader, so it is shared by all the analyses of the IDE.
+ * <p>
+ * Syntax trees are not kept: the visitor context of an analysis annotates their nodes, so a tree must not be reused by
+ * another analysis. The entries only hold immutable copies of the results.
+ * <p>
+ * Entries are keyed by file URI and hold the content hash and the {@link #fingerprint} of the settings they were
+ * computed with, so a file has at most one entry in the cache. Entries computed with other settings are dropped when
+ * an analysis starts, and the least recently used entries are evicted beyond {@link #MAX_FILES}.
+ */
+public final class FileResultCache {
+
+  private static final long MAX_FILES = 1_000L;
+
+  private static final FileResultCache SHARED = new FileResultCache(MAX_FILES);
+
+  private final Cache<String, Entry> results;
+
+  @VisibleForTesting
+  FileResultCache(long maxFiles) {
+    this.results = CacheBuilder.newBuilder()
+      .maximumSize(maxFiles)
+      .build();
+  }
+
+  public static FileResultCache shared() {
+    return SHARED;
+  }
+
+  /**
+   * Hash of everything, besides the content of a file, which can change the results of its analysis: the settings the
+   * {@link AnalysisCache} depends on, and the ones of the NOSONAR lines.
+   */
+  public static String fingerprint(SensorContext context, Collection<Class<?>> checkClasses) {
+    return Hashing.sha256().newHasher()
+      .putString(AnalysisCache.fingerprint(context, checkClasses), StandardCharsets.UTF_8)
+      .putBoolean(context.config().getBoolean(DelphiPlugin.IGNORE_HEADER_COMMENTS).orElse(DelphiPlugin.IGNORE_HEADER_COMMENTS_DEFAULT_VALUE))
+      .hash()
+      .toString();
+  }
+
+  /**
+   * Drops the entries which were computed with other settings than the analysis which starts.
+   */
+  public void startAnalysis(String fingerprint) {
+    results.asMap().values().removeIf(entry -> !entry.fingerprint.equals(fingerprint));
+  }
+
+  /**
+   * Returns the results of the analysis of the same contents of this file with the same settings, {@code null} if
+   * there is none.
+   */
+  @CheckForNull
+  public Entry get(String uri, String fingerprint, String contentHash) {
+    Entry entry = results.getIfPresent(uri);
+    if (entry != null && entry.fingerprint.equals(fingerprint) && entry.contentHash.equals(contentHash)) {
+      return entry;
+    }
+    return null;
+  }
+
+  public void put(String uri, String fingerprint, String contentHash, List<IssueRecord> issues, Set<Integer> noSonarLines) {
+    results.put(uri, new Entry(fingerprint, contentHash, issues, noSonarLines));
+  }
+
+  public void clear() {
+    results.invalidateAll();
+  }
+
+  public static final class Entry {
+    private final String fingerprint;
+    private final String contentHash;
+    private final List<IssueRecord> issues;
+    private final Set<Integer> noSonarLines;
+
+    private Entry(String fingerprint, String contentHash, List<IssueRecord> issues, Set<Integer> noSonarLines) {
+      this.fingerprint = fingerprint;
+      this.contentHash = contentHash;
+      this.issues = ImmutableList.copyOf(issues);
+      this.noSonarLines = ImmutableSet.copyOf(noSonarLines);
+    }
+
+    public List<IssueRecord> issues() {
+      return issues;
+    }
+
+    public Set<Integer> noSonarLines() {
+      return noSonarLines;
+    }
+  }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.cache;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.sonar.api.batch.fs.InputComponent;
+import org.sonar.api.issue.NoSonarFilter;
+
+/**
+ * Passes the NOSONAR lines of each file on to the {@link NoSonarFilter} of the scanner, and keeps a copy of them until
+ * they are {@link #take taken}, so that they can be put in the {@link FileResultCache} with the issues of the file.
+ */
+public final class RecordingNoSonarFilter extends NoSonarFilter {
+
+  private final NoSonarFilter delegate;
+  private final Map<InputComponent, Set<Integer>> noSonarLines = new ConcurrentHashMap<>();
+
+  public RecordingNoSonarFilter(NoSonarFilter delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public NoSonarFilter noSonarInFile(InputComponent inputComponent, Set<Integer> lines) {
+    delegate.noSonarInFile(inputComponent, lines);
+    noSonarLines.put(inputComponent, ImmutableSet.copyOf(lines));
+    return this;
+  }
+
+  /**
+   * NOSONAR lines reported for {@code inputComponent} since the last call, none if they were not reported.
+   */
+  public Set<Integer> take(InputComponent inputComponent) {
+    Set<Integer> lines = noSonarLines.remove(inputComponent);
+    return lines == null ? Collections.emptySet() : lines;
+  }
+
+}
@@ -80,7 +80,7 @@ public class CoverageSensor implements Sensor {
 
     LOG.info("Analysing {}", lcovFiles);
 
-    LCOVParser parser = LCOVParser.create(context, lcovFiles.toArray(new File[lcovFiles.size()]));
+    LCOVParser parser = LCOVParser.create(context, threads(context), lcovFiles.toArray(new File[lcovFiles.size()]));
     Map<InputFile, NewCoverage> coveredFiles = parser.coverageByFile();
 
     FileSystem fileSystem = context.fileSystem();
@@ -96,13 +96,13 @@ public class CoverageSensor implements Sensor {
       }
     }
 
-    List<String> unresolvedPaths = parser.unresolvedPaths();
+    int unresolvedPathsCount = parser.unresolvedPathsCount();
 
-    if (!unresolvedPaths.isEmpty()) {
+    if (unresolvedPathsCount > 0) {
       LOG.warn(
         String.format(
-          "Could not resolve %d file paths in %s, first unresolved path: %s",
-          unresolvedPaths.size(), lcovFiles, unresolvedPaths.get(0)));
+          "Could not resolve %d file paths in %s, unresolved paths include: %s",
+          unresolvedPathsCount, lcovFiles, parser.unresolvedPathsSample()));
     }
 
     int inconsistenciesNumber = parser.inconsistenciesNumber();
@@ -111,6 +111,11 @@ public class CoverageSensor implements Sensor {
     }
   }
 
+  private static int threads(SensorContext context) {
+    int threads = context.config().getInt(DelphiPlugin.ANALYSIS_THREADS).orElse(DelphiPlugin.ANALYSIS_THREADS_DEFAULT_VALUE);
+    return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+  }
+
   /**
    * Returns a java.io.File for the given path.
    * If path is not absolute, returns a File with module base directory as parent path.
@@ -0,0 +1,215 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.lcov;
+
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.fs.FilePredicate;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.InputFile.Type;
+import org.sonar.plugins.delphi.DelphiLanguage;
+
+/**
+ * Resolves the {@code SF:} paths of LCOV reports to the Delphi main files of the project.
+ * <p>
+ * Paths are matched, in this order, on the exact absolute or relative path, on the normalized path (case-insensitive,
+ * forward slashes, no drive letter), and finally on the longest matching suffix of path segments, for reports
+ * produced on another build agent. Every lookup, including misses, is cached. Safe for concurrent use.
+ */
+class InputFilePathIndex {
+
+  private static final int UNRESOLVED_SAMPLE_SIZE = 5;
+
+  private final Map<String, InputFile> byExactPath = new HashMap<>();
+  private final Map<String, Optional<InputFile>> byNormalizedPath = new HashMap<>();
+  private final Map<String, List<IndexedFile>> byFileName = new HashMap<>();
+
+  private final Map<String, Optional<InputFile>> resolvedPaths = new ConcurrentHashMap<>();
+  private final List<String> unresolvedSample = new ArrayList<>();
+  private int unresolvedCount = 0;
+
+  private InputFilePathIndex(Iterable<InputFile> inputFiles) {
+    for (InputFile inputFile : inputFiles) {
+      String absolutePath = Paths.get(inputFile.uri()).toString();
+      String relativePath = inputFile.relativePath();
+      byExactPath.put(absolutePath, inputFile);
+      byExactPath.put(relativePath, inputFile);
+
+      String normalizedAbsolutePath = normalize(absolutePath);
+      String normalizedRelativePath = normalize(relativePath);
+      addNormalized(normalizedAbsolutePath, inputFile);
+      addNormalized(normalizedRelativePath, inputFile);
+
+      byFileName.computeIfAbsent(fileName(normalizedRelativePath), k -> new ArrayList<>())
+        .add(new IndexedFile(segments(normalizedAbsolutePath), inputFile));
+    }
+  }
+
+  static InputFilePathIndex create(FileSystem fileSystem) {
+    FilePredicate mainFilePredicate = fileSystem.predicates().and(
+      fileSystem.predicates().hasType(Type.MAIN),
+      fileSystem.predicates().hasLanguage(DelphiLanguage.KEY));
+    return new InputFilePathIndex(fileSystem.inputFiles(mainFilePredicate));
+  }
+
+  private void addNormalized(String normalizedPath, InputFile inputFile) {
+    Optional<InputFile> existing = byNormalizedPath.get(normalizedPath);
+    if (existing == null) {
+      byNormalizedPath.put(normalizedPath, Optional.of(inputFile));
+    } else if (existing.isPresent() && !existing.get().equals(inputFile)) {
+      // only differ by case: ambiguous
+      byNormalizedPath.put(normalizedPath, Optional.empty());
+    }
+  }
+
+  @CheckForNull
+  InputFile resolve(String path) {
+    Optional<InputFile> inputFile = resolvedPaths.get(path);
+    if (inputFile == null) {
+      inputFile = Optional.ofNullable(lookup(path));
+      if (resolvedPaths.putIfAbsent(path, inputFile) == null && !inputFile.isPresent()) {
+        recordUnresolved(path);
+      }
+    }
+    return inputFile.orElse(null);
+  }
+
+  private synchronized void recordUnresolved(String path) {
+    unresolvedCount++;
+    if (unresolvedSample.size() < UNRESOLVED_SAMPLE_SIZE) {
+      unresolvedSample.add(path);
+    }
+  }
+
+  /**
+   * Number of distinct paths which could not be resolved.
+   */
+  synchronized int unresolvedCount() {
+    return unresolvedCount;
+  }
+
+  synchronized List<String> unresolvedSample() {
+    return Collections.unmodifiableList(new ArrayList<>(unresolvedSample));
+  }
+
+  @CheckForNull
+  private InputFile lookup(String path) {
+    String trimmedPath = path.trim();
+    InputFile inputFile = byExactPath.get(trimmedPath);
+    if (inputFile != null) {
+      return inputFile;
+    }
+
+    String normalizedPath = normalize(trimmedPath);
+    Optional<InputFile> normalizedMatch = byNormalizedPath.get(normalizedPath);
+    if (normalizedMatch != null) {
+      return normalizedMatch.orElse(null);
+    }
+    return lookupBySuffix(normalizedPath);
+  }
+
+  /**
+   * Picks the file sharing the longest trailing sequence of path segments with {@code normalizedPath}, provided that
+   * no other file shares as many segments. Sharing the file name alone is not enough, unless {@code normalizedPath} is
+   * a bare file name: a unit of the RTL or of a library often has the name of a project file.
+   */
+  @CheckForNull
+  private InputFile lookupBySuffix(String normalizedPath) {
+    List<IndexedFile> candidates = byFileName.get(fileName(normalizedPath));
+    if (candidates == null) {
+      return null;
+    }
+
+    String[] segments = segments(normalizedPath);
+    int minLength = Math.min(2, segments.length);
+    InputFile bestMatch = null;
+    int bestLength = minLength - 1;
+    boolean ambiguous = false;
+    for (IndexedFile candidate : candidates) {
+      int length = commonSuffixLength(segments, candidate.segments);
+      if (length > bestLength) {
+        bestMatch = candidate.inputFile;
+        bestLength = length;
+        ambiguous = false;
+      } else if (length == bestLength) {
+        ambiguous = true;
+      }
+    }
+    return ambiguous ? null : bestMatch;
+  }
+
+  private static int commonSuffixLength(String[] a, String[] b) {
+    int length = 0;
+    while (length < a.length && length < b.length && a[a.length - 1 - length].equals(b[b.length - 1 - length])) {
+      length++;
+    }
+    return length;
+  }
+
+  /**
+   * Lower case, forward slashes, no drive letter nor leading slash, and "." and ".." segments collapsed.
+   */
+  static String normalize(String path) {
+    String normalized = path.replace('\\', '/').toLowerCase(Locale.ENGLISH);
+    if (normalized.length() >= 2 && normalized.charAt(1) == ':' && Character.isLetter(normalized.charAt(0))) {
+      normalized = normalized.substring(2);
+    }
+
+    Deque<String> segments = new ArrayDeque<>();
+    for (String segment : normalized.split("/")) {
+      if ("..".equals(segment) && !segments.isEmpty() && !"..".equals(segments.peekLast())) {
+        segments.removeLast();
+      } else if (!segment.isEmpty() && !".".equals(segment)) {
+        segments.addLast(segment);
+      }
+    }
+    return String.join("/", segments);
+  }
+
+  private static String[] segments(String normalizedPath) {
+    return normalizedPath.split("/");
+  }
+
+  private static String fileName(String normalizedPath) {
+    return normalizedPath.substring(normalizedPath.lastIndexOf('/') + 1);
+  }
+
+  private static class IndexedFile {
+    private final String[] segments;
+    private final InputFile inputFile;
+
+    IndexedFile(String[] segments, InputFile inputFile) {
+      this.segments = segments;
+      this.inputFile = inputFile;
+    }
+  }
+
+}
@@ -19,17 +19,24 @@
  */
 package org.sonar.plugins.delphi.lcov;
 
-import com.google.common.base.MoreObjects;
-import com.google.common.collect.Lists;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.annotation.CheckForNull;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
@@ -39,144 +46,310 @@ import org.sonar.api.utils.log.Loggers;
 
 /**
  * http://ltp.sourceforge.net/coverage/lcov/geninfo.1.php
+ * <p>
+ * Reports are read line by line and folded into per-file accumulators as they are read, so memory depends on the
+ * number of covered source lines and not on the size of the reports.
  */
 public final class LCOVParser {
 
   private static final String SF = "SF:";
   private static final String DA = "DA:";
   private static final String BRDA = "BRDA:";
+  private static final String END_OF_RECORD = "end_of_record";
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
 
   private final Map<InputFile, NewCoverage> coverageByFile;
   private final SensorContext context;
-  private final List<String> unresolvedPaths = Lists.newArrayList();
+  private final InputFilePathIndex pathIndex;
+  private final Map<InputFile, FileData> files = Maps.newHashMap();
   private int inconsistenciesCounter = 0;
 
   private static final Logger LOG = Loggers.get(LCOVParser.class);
 
-  private LCOVParser(List<String> lines, SensorContext context) {
+  private LCOVParser(SensorContext context, int threads, File... reports) {
     this.context = context;
-    this.coverageByFile = parse(lines);
+    this.pathIndex = InputFilePathIndex.create(context.fileSystem());
+    if (threads > 1 && reports.length > 1) {
+      parseInParallel(reports, Math.min(threads, reports.length));
+    } else {
+      for (File report : reports) {
+        collect(new ReportParser(report, files).parse());
+      }
+    }
+    this.coverageByFile = toCoverage();
   }
 
   static LCOVParser create(SensorContext context, File... files) {
-    final List<String> lines=new LinkedList<>();
-    for(File file: files) {
-      try (Stream<String> fileLines = Files.lines(file.toPath())){
-        lines.addAll(fileLines.collect(Collectors.toList()));
-      } catch (IOException e) {
-        throw new IllegalArgumentException("Could not read content from file: " + file, e);
-      }
-    }
-    return new LCOVParser(lines, context);
+    return create(context, 1, files);
+  }
+
+  static LCOVParser create(SensorContext context, int threads, File... files) {
+    return new LCOVParser(context, threads, files);
   }
 
   Map<InputFile, NewCoverage> coverageByFile() {
     return coverageByFile;
   }
 
-  List<String> unresolvedPaths() {
-    return unresolvedPaths;
+  int unresolvedPathsCount() {
+    return pathIndex.unresolvedCount();
+  }
+
+  List<String> unresolvedPathsSample() {
+    return pathIndex.unresolvedSample();
   }
 
   int inconsistenciesNumber() {
     return inconsistenciesCounter;
   }
 
-  private Map<InputFile, NewCoverage> parse(List<String> lines) {
-    final Map<InputFile, FileData> files = Maps.newHashMap();
-    FileData fileData = null;
-    int reportLineNum = 0;
-
-    for (String line : lines) {
-      reportLineNum++;
-      if (line.startsWith(SF)) {
-        fileData = loadCurrentFileData(files, line);
+  /**
+   * Each report is parsed on the pool into its own accumulators, which are merged into {@link #files} as soon as the
+   * report is done, so at most {@code threads} partial results are alive at once. Hits are summed, so the result
+   * does not depend on the order in which reports complete.
+   */
+  private void parseInParallel(File[] reports, int threads) {
+    ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+      .setNameFormat("delphi-lcov-%d")
+      .setDaemon(true)
+      .build());
+    try {
+      CompletionService<ReportParser> completionService = new ExecutorCompletionService<>(pool);
+      for (File report : reports) {
+        completionService.submit(() -> new ReportParser(report, Maps.newHashMap()).parse());
+      }
+      for (int i = 0; i < reports.length; i++) {
+        ReportParser reportParser = takeResult(completionService);
+        merge(reportParser.files);
+        collect(reportParser);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
 
-      } else if (fileData != null) {
-        if (line.startsWith(DA)) {
-          parseLineCoverage(fileData, reportLineNum, line);
+  private static ReportParser takeResult(CompletionService<ReportParser> completionService) {
+    try {
+      return completionService.take().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while reading LCOV reports", e);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause());
+      throw new IllegalStateException("Could not read LCOV report", e.getCause());
+    }
+  }
 
-        } else if (line.startsWith(BRDA)) {
-          parseBranchCoverage(fileData, reportLineNum, line);
-        }
+  private void merge(Map<InputFile, FileData> reportFiles) {
+    for (Map.Entry<InputFile, FileData> e : reportFiles.entrySet()) {
+      FileData fileData = files.get(e.getKey());
+      if (fileData == null) {
+        files.put(e.getKey(), e.getValue());
+      } else {
+        fileData.merge(e.getValue());
       }
-
     }
+  }
+
+  private void collect(ReportParser reportParser) {
+    inconsistenciesCounter += reportParser.inconsistenciesCounter;
+  }
 
+  /**
+   * Coverage of a file is only turned into {@link NewCoverage} once all reports have been read: the same source file
+   * may appear in several records, whose hits have to be summed.
+   */
+  private Map<InputFile, NewCoverage> toCoverage() {
     Map<InputFile, NewCoverage> coveredFiles = Maps.newHashMap();
     for (Map.Entry<InputFile, FileData> e : files.entrySet()) {
       NewCoverage newCoverage = context.newCoverage().onFile(e.getKey());
       e.getValue().save(newCoverage);
       coveredFiles.put(e.getKey(), newCoverage);
     }
+    files.clear();
     return coveredFiles;
   }
 
-  private void parseBranchCoverage(FileData fileData, int reportLineNum, String line) {
-    try {
-      // BRDA:<line number>,<block number>,<branch number>,<taken>
-      String[] tokens = line.substring(BRDA.length()).trim().split(",");
-      String lineNumber = tokens[0];
-      String branchNumber = tokens[1] + tokens[2];
-      String taken = tokens[3];
+  private static int nextSeparator(String line, int from) {
+    if (from > line.length()) {
+      throw new IllegalArgumentException("Missing field in \"" + line + "\"");
+    }
+    int separator = line.indexOf(',', from);
+    return separator < 0 ? line.length() : separator;
+  }
 
-      fileData.addBranch(Integer.valueOf(lineNumber), branchNumber, "-".equals(taken) ? 0 : Integer.valueOf(taken));
-    } catch (Exception e) {
-      logWrongDataWarning("BRDA", reportLineNum, e);
+  /**
+   * Parses the decimal number between {@code start} (inclusive) and {@code end} (exclusive) without allocating,
+   * ignoring surrounding whitespace.
+   */
+  private static long parseNumber(String line, int start, int end) {
+    int from = skipLeadingWhitespace(line, start, end);
+    int to = skipTrailingWhitespace(line, from, end);
+    boolean negative = from < to && line.charAt(from) == '-';
+    if (negative) {
+      from++;
     }
+    if (from == to) {
+      throw new NumberFormatException("Missing number in \"" + line + "\"");
+    }
+
+    long value = 0;
+    for (int i = from; i < to; i++) {
+      int digit = line.charAt(i) - '0';
+      if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+        throw new NumberFormatException("Invalid number in \"" + line + "\"");
+      }
+      value = value * 10 + digit;
+    }
+    return negative ? -value : value;
   }
 
-  private void parseLineCoverage(FileData fileData, int reportLineNum, String line) {
-    try {
-      // DA:<line number>,<execution count>[,<checksum>]
-      String execution = line.substring(DA.length());
-      String executionCount = execution.substring(execution.indexOf(',') + 1);
-      String lineNumber = execution.substring(0, execution.indexOf(','));
+  private static boolean isNotTaken(String line, int start, int end) {
+    int from = skipLeadingWhitespace(line, start, end);
+    int to = skipTrailingWhitespace(line, from, end);
+    return to - from == 1 && line.charAt(from) == '-';
+  }
 
-      fileData.addLine(Integer.valueOf(lineNumber), Integer.valueOf(executionCount));
-    } catch (Exception e) {
-      logWrongDataWarning("DA", reportLineNum, e);
+  private static int skipLeadingWhitespace(String line, int start, int end) {
+    int from = start;
+    while (from < end && Character.isWhitespace(line.charAt(from))) {
+      from++;
     }
+    return from;
   }
 
-  private void logWrongDataWarning(String dataType, int reportLineNum, Exception e) {
-    LOG.debug(String.format("Problem during processing LCOV report: can't save %s data for line %s of coverage report file (%s).", dataType, reportLineNum, e.toString()));
-    inconsistenciesCounter++;
+  private static int skipTrailingWhitespace(String line, int start, int end) {
+    int to = end;
+    while (to > start && Character.isWhitespace(line.charAt(to - 1))) {
+      to--;
+    }
+    return to;
   }
 
-  @CheckForNull
-  private FileData loadCurrentFileData(final Map<InputFile, FileData> files, String line) {
-    // SF:<absolute path to the source file>
-    String filePath = line.substring(SF.length());
-    FileData fileData = null;
-    // some tools (like Istanbul, Karma) provide relative paths, so let's consider them relative to project directory
-    InputFile inputFile = context.fileSystem().inputFile(context.fileSystem().predicates().hasPath(filePath));
-    if (inputFile != null) {
-      fileData = files.get(inputFile);
-      if (fileData == null) {
-        fileData = new FileData(inputFile);
-        files.put(inputFile, fileData);
+  /**
+   * Parses a single report into its own accumulators, so that several reports can be parsed concurrently.
+   */
+  private class ReportParser {
+    private final File report;
+    private final Map<InputFile, FileData> files;
+    private int inconsistenciesCounter = 0;
+
+    ReportParser(File report, Map<InputFile, FileData> files) {
+      this.report = report;
+      this.files = files;
+    }
+
+    ReportParser parse() {
+      // InputStreamReader replaces malformed input instead of failing like Files.newBufferedReader does
+      try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(Files.newInputStream(report.toPath()), StandardCharsets.UTF_8), READ_BUFFER_SIZE)) {
+        FileData fileData = null;
+        int reportLineNum = 0;
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+          reportLineNum++;
+          if (line.startsWith(SF)) {
+            fileData = loadCurrentFileData(files, line);
+
+          } else if (fileData != null) {
+            if (line.startsWith(DA)) {
+              parseLineCoverage(fileData, reportLineNum, line);
+
+            } else if (line.startsWith(BRDA)) {
+              parseBranchCoverage(fileData, reportLineNum, line);
+
+            } else if (line.startsWith(END_OF_RECORD)) {
+              fileData = null;
+            }
+          }
+        }
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Could not read content from file: " + report, e);
       }
-    } else {
-      unresolvedPaths.add(filePath);
+      return this;
+    }
+
+    private void parseBranchCoverage(FileData fileData, int reportLineNum, String line) {
+      try {
+        // BRDA:<line number>,<block number>,<branch number>,<taken>
+        int start = BRDA.length();
+        int end = nextSeparator(line, start);
+        int lineNumber = Math.toIntExact(parseNumber(line, start, end));
+
+        start = end + 1;
+        end = nextSeparator(line, start);
+        int blockNumber = Math.toIntExact(parseNumber(line, start, end));
+
+        start = end + 1;
+        end = nextSeparator(line, start);
+        int branchNumber = Math.toIntExact(parseNumber(line, start, end));
+
+        start = end + 1;
+        end = nextSeparator(line, start);
+        long taken = isNotTaken(line, start, end) ? 0 : parseNumber(line, start, end);
+
+        fileData.addBranch(lineNumber, blockNumber, branchNumber, taken);
+      } catch (Exception e) {
+        logWrongDataWarning("BRDA", reportLineNum, e);
+      }
+    }
+
+    private void parseLineCoverage(FileData fileData, int reportLineNum, String line) {
+      try {
+        // DA:<line number>,<execution count>[,<checksum>]
+        int start = DA.length();
+        int end = nextSeparator(line, start);
+        int lineNumber = Math.toIntExact(parseNumber(line, start, end));
+
+        start = end + 1;
+        end = nextSeparator(line, start);
+        long executionCount = parseNumber(line, start, end);
+
+        fileData.addLine(lineNumber, executionCount);
+      } catch (Exception e) {
+        logWrongDataWarning("DA", reportLineNum, e);
+      }
+    }
+
+    private void logWrongDataWarning(String dataType, int reportLineNum, Exception e) {
+      LOG.debug(String.format("Problem during processing LCOV report: can't save %s data for line %s of coverage report file (%s).", dataType, reportLineNum, e.toString()));
+      inconsistenciesCounter++;
+    }
+
+    @CheckForNull
+    private FileData loadCurrentFileData(final Map<InputFile, FileData> files, String line) {
+      // SF:<absolute path to the source file>
+      String filePath = line.substring(SF.length());
+      FileData fileData = null;
+      // some tools (like Istanbul, Karma) provide relative paths, so let's consider them relative to project directory
+      InputFile inputFile = pathIndex.resolve(filePath);
+      if (inputFile != null) {
+        fileData = files.get(inputFile);
+        if (fileData == null) {
+          fileData = new FileData(inputFile);
+          files.put(inputFile, fileData);
+        }
+      }
+      return fileData;
     }
-    return fileData;
   }
 
   private static class FileData {
     /**
-     * line number -> branch number -> taken
+     * line number -> branches of the line, {@code null} when the report has no branch for the line
      */
-    private Map<Integer, Map<String, Integer>> branches = Maps.newHashMap();
+    private final LineBranches[] branches;
 
     /**
-     * line number -> execution count
+     * line number -> execution count, only meaningful for the lines set in {@link #linesWithHits}
      */
-    private Map<Integer, Integer> hits = Maps.newHashMap();
+    private final long[] hits;
+    private final BitSet linesWithHits;
 
     /**
      * Number of lines in the file
-     * Required to check if line exist in a file, see {@link #checkLine(Integer)}
+     * Required to check if line exist in a file, see {@link #checkLine(int)}
      */
     private final int linesInFile;
 
@@ -186,45 +359,67 @@ public final class LCOVParser {
     FileData(InputFile inputFile) {
       linesInFile = inputFile.lines();
       filename = inputFile.relativePath();
+      branches = new LineBranches[linesInFile + 1];
+      hits = new long[linesInFile + 1];
+      linesWithHits = new BitSet(linesInFile + 1);
     }
 
-    void addBranch(Integer lineNumber, String branchNumber, Integer taken) {
+    void addBranch(int lineNumber, int blockNumber, int branchNumber, long taken) {
       checkLine(lineNumber);
 
-      Map<String, Integer> branchesForLine = branches.get(lineNumber);
+      LineBranches branchesForLine = branches[lineNumber];
       if (branchesForLine == null) {
-        branchesForLine = Maps.newHashMap();
-        branches.put(lineNumber, branchesForLine);
+        branchesForLine = new LineBranches();
+        branches[lineNumber] = branchesForLine;
       }
-      Integer currentValue = branchesForLine.get(branchNumber);
-      branchesForLine.put(branchNumber, MoreObjects.firstNonNull(currentValue, 0) + taken);
+      branchesForLine.add(LineBranches.branchId(blockNumber, branchNumber), taken);
     }
 
-    void addLine(Integer lineNumber, Integer executionCount) {
+    void addLine(int lineNumber, long executionCount) {
       checkLine(lineNumber);
 
-      Integer currentValue = hits.get(lineNumber);
-      hits.put(lineNumber, MoreObjects.firstNonNull(currentValue, 0) + executionCount);
+      hits[lineNumber] += executionCount;
+      linesWithHits.set(lineNumber);
     }
 
-    void save(NewCoverage newCoverage) {
-      for (Map.Entry<Integer, Integer> e : hits.entrySet()) {
-        newCoverage.lineHits(e.getKey(), e.getValue());
-      }
-      for (Map.Entry<Integer, Map<String, Integer>> e : branches.entrySet()) {
-        int conditions = e.getValue().size();
-        int covered = 0;
-        for (Integer taken : e.getValue().values()) {
-          if (taken > 0) {
-            covered++;
+    /**
+     * Adds the hits and branches of {@code other}, which must come from the same file, like
+     * {@link #addLine(int, long)} and {@link #addBranch(int, int, int, long)} do.
+     */
+    void merge(FileData other) {
+      for (int line = other.linesWithHits.nextSetBit(1); line >= 0; line = other.linesWithHits.nextSetBit(line + 1)) {
+        hits[line] += other.hits[line];
+      }
+      linesWithHits.or(other.linesWithHits);
+
+      for (int line = 1; line <= linesInFile; line++) {
+        LineBranches otherBranches = other.branches[line];
+        if (otherBranches != null) {
+          if (branches[line] == null) {
+            branches[line] = new LineBranches();
           }
+          branches[line].merge(otherBranches);
         }
+      }
+    }
 
-        newCoverage.conditions(e.getKey(), conditions, covered);
+    void save(NewCoverage newCoverage) {
+      for (int line = linesWithHits.nextSetBit(1); line >= 0; line = linesWithHits.nextSetBit(line + 1)) {
+        newCoverage.lineHits(line, saturatedCast(hits[line]));
+      }
+      for (int line = 1; line <= linesInFile; line++) {
+        LineBranches branchesForLine = branches[line];
+        if (branchesForLine != null) {
+          newCoverage.conditions(line, branchesForLine.size, branchesForLine.coveredCount());
+        }
       }
     }
 
-    private void checkLine(Integer lineNumber) {
+    private static int saturatedCast(long value) {
+      return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+    }
+
+    private void checkLine(int lineNumber) {
       if (lineNumber < 1 || lineNumber > linesInFile) {
         throw new IllegalArgumentException(String.format(WRONG_LINE_EXCEPTION_MESSAGE, lineNumber, filename));
       }
@@ -232,4 +427,50 @@ public final class LCOVParser {
 
   }
 
+  /**
+   * Branches of a single line: (block number, branch number) packed in a long -> taken.
+   * Lines rarely have more than a handful of branches, so a linear search beats hashing.
+   */
+  private static class LineBranches {
+    private long[] ids = new long[2];
+    private long[] taken = new long[2];
+    private int size = 0;
+
+    static long branchId(int blockNumber, int branchNumber) {
+      return ((long) blockNumber << 32) | (branchNumber & 0xFFFFFFFFL);
+    }
+
+    void add(long branchId, long branchTaken) {
+      for (int i = 0; i < size; i++) {
+        if (ids[i] == branchId) {
+          taken[i] += branchTaken;
+          return;
+        }
+      }
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+        taken = Arrays.copyOf(taken, size * 2);
+      }
+      ids[size] = branchId;
+      taken[size] = branchTaken;
+      size++;
+    }
+
+    void merge(LineBranches other) {
+      for (int i = 0; i < other.size; i++) {
+        add(other.ids[i], other.taken[i]);
+      }
+    }
+
+    int coveredCount() {
+      int covered = 0;
+      for (int i = 0; i < size; i++) {
+        if (taken[i] > 0) {
+          covered++;
+        }
+      }
+      return covered;
+    }
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,220 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.monitoring;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Records wall time, call count and allocated bytes of the analysis phases and of each visitor and check.
+ * <p>
+ * Measurements are aggregated by name across files and threads. When disabled, {@link #start(Category, String)}
+ * returns a shared no-op measurement and nothing is recorded. A measurement is meant to be used in a
+ * try-with-resources block, so that a step which throws, like a file exceeding its time budget, is recorded too.
+ */
+public class AnalysisMonitor {
+
+  private static final Logger LOG = Loggers.get(AnalysisMonitor.class);
+
+  public static final String READ_CONTENTS = "read contents";
+  public static final String PARSE = "parse";
+  public static final String VISITOR_CONTEXT = "visitor context";
+  public static final String SCAN = "scan";
+  public static final String SAVE_ISSUES = "save issues";
+  public static final String HIGHLIGHT_SYMBOLS = "highlight symbols";
+
+  public enum Category {
+    PHASE, VISITOR, CHECK
+  }
+
+  private static final Measurement NO_OP = new Measurement(null, null, 0, 0);
+
+  private final boolean enabled;
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  @Nullable
+  private final com.sun.management.ThreadMXBean allocationBean;
+
+  private AnalysisMonitor(boolean enabled) {
+    this.enabled = enabled;
+    this.allocationBean = enabled ? allocationBean() : null;
+  }
+
+  public static AnalysisMonitor enabled() {
+    return new AnalysisMonitor(true);
+  }
+
+  public static AnalysisMonitor disabled() {
+    return new AnalysisMonitor(false);
+  }
+
+  @Nullable
+  private static com.sun.management.ThreadMXBean allocationBean() {
+    ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    if (threadBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+      if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+        return bean;
+      }
+    }
+    LOG.debug("Allocated bytes can't be measured on this JVM");
+    return null;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public Measurement start(Category category, String name) {
+    if (!enabled) {
+      return NO_OP;
+    }
+    Entry entry = entries.computeIfAbsent(category + ":" + name, k -> new Entry(category, name));
+    return new Measurement(this, entry, System.nanoTime(), allocatedBytes());
+  }
+
+  /**
+   * Records a call of {@code nanos} measured by the caller, for code which is too fine grained to be wrapped in a
+   * {@link Measurement}. Allocations are not measured.
+   */
+  public void record(Category category, String name, long nanos) {
+    if (!enabled) {
+      return;
+    }
+    Entry entry = entries.computeIfAbsent(category + ":" + name, k -> new Entry(category, name));
+    entry.calls.increment();
+    entry.nanos.add(nanos);
+  }
+
+  private long allocatedBytes() {
+    return allocationBean == null ? 0 : allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Logs the measurements, slowest first, and optionally writes them as JSON to {@code reportPath}.
+   */
+  public void report(@Nullable Path reportPath) {
+    if (!enabled) {
+      return;
+    }
+    List<Entry> sortedEntries = new ArrayList<>(entries.values());
+    sortedEntries.sort(Comparator.comparingLong((Entry entry) -> entry.nanos.sum()).reversed());
+
+    LOG.info("Delphi analysis performance (time, calls, allocated):");
+    for (Entry entry : sortedEntries) {
+      LOG.info(String.format("  %-8s %-60s %10d ms %10d calls %10d MB",
+        entry.category, entry.name, TimeUnit.NANOSECONDS.toMillis(entry.nanos.sum()), entry.calls.sum(), entry.allocatedBytes.sum() >> 20));
+    }
+
+    if (reportPath != null) {
+      writeJson(reportPath, sortedEntries);
+    }
+  }
+
+  private static void writeJson(Path reportPath, List<Entry> sortedEntries) {
+    List<JsonEntry> jsonEntries = new ArrayList<>(sortedEntries.size());
+    for (Entry entry : sortedEntries) {
+      jsonEntries.add(new JsonEntry(entry));
+    }
+    Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    try {
+      Files.createDirectories(reportPath.toAbsolutePath().getParent());
+      try (Writer writer = Files.newBufferedWriter(reportPath, StandardCharsets.UTF_8)) {
+        gson.toJson(jsonEntries, writer);
+      }
+      LOG.info("Delphi analysis performance report written to {}", reportPath);
+    } catch (IOException e) {
+      LOG.warn("Unable to write Delphi analysis performance report to " + reportPath, e);
+    }
+  }
+
+  public static class Measurement implements AutoCloseable {
+    private final AnalysisMonitor monitor;
+    private final Entry entry;
+    private final long startNanos;
+    private final long startAllocatedBytes;
+
+    private Measurement(@Nullable AnalysisMonitor monitor, @Nullable Entry entry, long startNanos, long startAllocatedBytes) {
+      this.monitor = monitor;
+      this.entry = entry;
+      this.startNanos = startNanos;
+      this.startAllocatedBytes = startAllocatedBytes;
+    }
+
+    public void stop() {
+      if (entry != null) {
+        entry.calls.increment();
+        entry.nanos.add(System.nanoTime() - startNanos);
+        entry.allocatedBytes.add(monitor.allocatedBytes() - startAllocatedBytes);
+      }
+    }
+
+    @Override
+    public void close() {
+      stop();
+    }
+  }
+
+  private static class Entry {
+    private final Category category;
+    private final String name;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    Entry(Category category, String name) {
+      this.category = category;
+      this.name = name;
+    }
+  }
+
+  private static class JsonEntry {
+    final String category;
+    final String name;
+    final long calls;
+    final long timeMillis;
+    final long allocatedBytes;
+
+    JsonEntry(Entry entry) {
+      this.category = entry.category.name();
+      this.name = entry.name;
+      this.calls = entry.calls.sum();
+      this.timeMillis = TimeUnit.NANOSECONDS.toMillis(entry.nanos.sum());
+      this.allocatedBytes = entry.allocatedBytes.sum();
+    }
+  }
+
+}
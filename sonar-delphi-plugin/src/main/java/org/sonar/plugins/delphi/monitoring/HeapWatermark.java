@@ -0,0 +1,74 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.monitoring;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Highest heap usage reached during the analysis, as tracked by the JVM memory pools.
+ * <p>
+ * The peak of each heap pool is reset on {@link #start()}. Pools do not peak at the same time, so the reported value is
+ * an upper bound of the actual watermark.
+ */
+public class HeapWatermark {
+
+  private static final Logger LOG = Loggers.get(HeapWatermark.class);
+
+  private final List<MemoryPoolMXBean> heapPools;
+
+  private HeapWatermark(List<MemoryPoolMXBean> heapPools) {
+    this.heapPools = heapPools;
+  }
+
+  public static HeapWatermark start() {
+    List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+      .filter(pool -> pool.getType() == MemoryType.HEAP && pool.isValid())
+      .collect(Collectors.toList());
+    heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+    return new HeapWatermark(heapPools);
+  }
+
+  public long peakBytes() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : heapPools) {
+      if (pool.isValid()) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
+  public void report() {
+    long maxBytes = Runtime.getRuntime().maxMemory();
+    LOG.info("Delphi analysis heap watermark: {} MB of {} MB", toMegabytes(peakBytes()),
+      maxBytes == Long.MAX_VALUE ? "unbounded" : toMegabytes(maxBytes));
+  }
+
+  private static long toMegabytes(long bytes) {
+    return bytes / (1024 * 1024);
+  }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.monitoring;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Keeps the {@code size} files which took the longest to analyse.
+ */
+public class SlowestFiles {
+
+  private static final Logger LOG = Loggers.get(SlowestFiles.class);
+
+  private final int size;
+  private final PriorityQueue<FileDuration> fastestFirst = new PriorityQueue<>(Comparator.comparingLong(fileDuration -> fileDuration.nanos));
+
+  public SlowestFiles(int size) {
+    this.size = size;
+  }
+
+  public synchronized void add(InputFile inputFile, long nanos) {
+    if (size <= 0) {
+      return;
+    }
+    if (fastestFirst.size() < size) {
+      fastestFirst.add(new FileDuration(inputFile.toString(), nanos));
+    } else if (fastestFirst.peek().nanos < nanos) {
+      fastestFirst.poll();
+      fastestFirst.add(new FileDuration(inputFile.toString(), nanos));
+    }
+  }
+
+  public synchronized void report() {
+    if (fastestFirst.isEmpty()) {
+      return;
+    }
+    List<FileDuration> slowestFirst = new ArrayList<>(fastestFirst);
+    slowestFirst.sort(Comparator.comparingLong((FileDuration fileDuration) -> fileDuration.nanos).reversed());
+
+    LOG.info("Slowest Delphi files:");
+    for (FileDuration fileDuration : slowestFirst) {
+      LOG.info(String.format("  %10d ms  %s", TimeUnit.NANOSECONDS.toMillis(fileDuration.nanos), fileDuration.file));
+    }
+  }
+
+  private static class FileDuration {
+    private final String file;
+    private final long nanos;
+
+    FileDuration(String file, long nanos) {
+      this.file = file;
+      this.nanos = nanos;
+    }
+  }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import java.util.HashSet;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.fs.InputFile;
+
+/**
+ * Files scanned by the checks when only the changes of a pull request are analysed: the changed files, and the units
+ * which use them directly or through a bounded number of intermediate units, as rules can raise issues on a unit
+ * because of the declarations of the units it uses. The units which used a unit deleted or renamed since the previous
+ * analysis are found in the graph of the previous analysis, as the current one no longer knows the unit.
+ */
+public final class ChangeScope {
+
+  private final Set<String> changedPaths;
+  private final Set<String> dependentPaths;
+
+  private ChangeScope(Set<String> changedPaths, Set<String> dependentPaths) {
+    this.changedPaths = changedPaths;
+    this.dependentPaths = dependentPaths;
+  }
+
+  /**
+   * Returns the scope of the changes among {@code inputFiles}, or {@code null} if the status of some file is unknown.
+   *
+   * @param maxDepth number of intermediate units between a changed unit and its dependents, negative for no limit
+   */
+  @CheckForNull
+  public static ChangeScope compute(
+    Iterable<InputFile> inputFiles, UnitDependencyGraph graph, UnitDependencyGraph previousGraph, int maxDepth
+  ) {
+    Set<String> changedPaths = new HashSet<>();
+    for (InputFile inputFile : inputFiles) {
+      InputFile.Status status = inputFile.status();
+      if (status == null) {
+        return null;
+      }
+      if (status != InputFile.Status.SAME) {
+        changedPaths.add(inputFile.relativePath());
+      }
+    }
+
+    Set<String> dependentPaths = new HashSet<>();
+    for (String changedPath : changedPaths) {
+      UnitDeclaration declaration = graph.declarationOf(changedPath);
+      if (declaration != null) {
+        addDependents(graph.transitiveDependents(declaration.name(), maxDepth), graph, changedPaths, dependentPaths);
+      }
+    }
+    for (String previousUnit : previousGraph.units()) {
+      if (!graph.contains(previousUnit)) {
+        addDependents(previousGraph.transitiveDependents(previousUnit, maxDepth), graph, changedPaths, dependentPaths);
+      }
+    }
+    return new ChangeScope(changedPaths, dependentPaths);
+  }
+
+  private static void addDependents(
+    Set<String> dependents, UnitDependencyGraph graph, Set<String> changedPaths, Set<String> dependentPaths
+  ) {
+    for (String dependent : dependents) {
+      String path = graph.pathOf(dependent);
+      if (path != null && !changedPaths.contains(path)) {
+        dependentPaths.add(path);
+      }
+    }
+  }
+
+  public boolean contains(InputFile inputFile) {
+    String path = inputFile.relativePath();
+    return changedPaths.contains(path) || dependentPaths.contains(path);
+  }
+
+  public int changedCount() {
+    return changedPaths.size();
+  }
+
+  public int dependentCount() {
+    return dependentPaths.size();
+  }
+
+}
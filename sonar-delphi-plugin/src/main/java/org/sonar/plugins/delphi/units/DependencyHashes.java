@@ -0,0 +1,49 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link UnitSummaries#dependencyHash Dependency hashes} of the units of a graph, computed at most once per unit: each
+ * computation walks all the units which the unit uses, directly or not. Safe to use from several analysis threads.
+ */
+public final class DependencyHashes {
+
+  private final UnitDependencyGraph graph;
+  private final UnitSummaries summaries;
+
+  /**
+   * Dependency hash of each unit, by lower case unit name.
+   */
+  private final Map<String, String> hashesByUnit = new ConcurrentHashMap<>();
+
+  public DependencyHashes(UnitDependencyGraph graph, UnitSummaries summaries) {
+    this.graph = graph;
+    this.summaries = summaries;
+  }
+
+  public String of(String unitName) {
+    return hashesByUnit.computeIfAbsent(unitName.toLowerCase(Locale.ENGLISH), unit -> summaries.dependencyHash(graph, unitName));
+  }
+
+}
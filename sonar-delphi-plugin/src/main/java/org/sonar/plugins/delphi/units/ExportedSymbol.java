@@ -0,0 +1,93 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Declaration of the interface section of a unit, which other units can refer to.
+ */
+public final class ExportedSymbol {
+
+  public enum Kind {
+    TYPE, ROUTINE, CONSTANT, VARIABLE, FIELD, METHOD, PROPERTY
+  }
+
+  private final Kind kind;
+  private final String name;
+  @Nullable
+  private final String container;
+  private final String signature;
+
+  public ExportedSymbol(Kind kind, String name, @Nullable String container, String signature) {
+    this.kind = kind;
+    this.name = name;
+    this.container = container;
+    this.signature = signature;
+  }
+
+  public Kind kind() {
+    return kind;
+  }
+
+  public String name() {
+    return name;
+  }
+
+  /**
+   * Name of the type declaring the member, {@code null} for symbols declared at unit level.
+   */
+  @CheckForNull
+  public String container() {
+    return container;
+  }
+
+  /**
+   * Source text of the declaration, with whitespaces and comments collapsed into single spaces.
+   */
+  public String signature() {
+    return signature;
+  }
+
+  void writeTo(DataOutput out) throws IOException {
+    out.writeByte(kind.ordinal());
+    out.writeUTF(name);
+    out.writeUTF(container == null ? "" : container);
+    out.writeUTF(signature);
+  }
+
+  static ExportedSymbol readFrom(DataInput in) throws IOException {
+    Kind kind = Kind.values()[in.readByte()];
+    String name = in.readUTF();
+    String container = in.readUTF();
+    String signature = in.readUTF();
+    return new ExportedSymbol(kind, name, container.isEmpty() ? null : container, signature);
+  }
+
+  @Override
+  public String toString() {
+    return kind + " " + (container == null ? "" : (container + ".")) + name + ": " + signature;
+  }
+
+}
@@ -0,0 +1,409 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.plugins.delphi.units.ExportedSymbol.Kind;
+
+/**
+ * Extracts the {@link UnitSummary} of a unit from its interface section, with the {@link Lexer} of this package
+ * rather than the full parser. Declarations which cannot be understood are skipped up to the next semicolon.
+ */
+public final class InterfaceScanner {
+
+  /**
+   * Signatures are kept short: they identify declarations, they are not meant to be parsed again.
+   */
+  private static final int MAX_SIGNATURE_LENGTH = 1000;
+
+  private static final Set<String> ROUTINES = ImmutableSet.of("procedure", "function", "constructor", "destructor", "operator");
+
+  private static final Set<String> VISIBILITIES = ImmutableSet.of("private", "protected", "public", "published", "strict", "automated");
+
+  /**
+   * Directives which can follow the semicolon of a declaration.
+   */
+  private static final Set<String> DIRECTIVES = ImmutableSet.of(
+    "abstract", "assembler", "cdecl", "default", "deprecated", "dispid", "dynamic", "experimental", "export", "external",
+    "far", "final", "forward", "inline", "library", "message", "near", "nodefault", "overload", "override", "pascal",
+    "platform", "readonly", "register", "reintroduce", "safecall", "static", "stdcall", "stored", "unsafe", "varargs",
+    "virtual", "winapi", "writeonly");
+
+  private enum Section {
+    NONE, TYPE, CONST, VAR
+  }
+
+  private final Lexer lexer;
+  private final List<ExportedSymbol> symbols = new ArrayList<>();
+
+  private InterfaceScanner(String source) {
+    this.lexer = new Lexer(source);
+  }
+
+  /**
+   * @return the summary of the unit, {@code null} if the file is not a unit
+   */
+  @CheckForNull
+  public static UnitSummary scan(String source) {
+    return new InterfaceScanner(source).scan();
+  }
+
+  @CheckForNull
+  private UnitSummary scan() {
+    if (lexer.next() != Lexer.Kind.WORD || !lexer.isWord("unit")) {
+      return null;
+    }
+    lexer.next();
+    String unitName = lexer.dottedName();
+    if (unitName == null) {
+      return null;
+    }
+    while (lexer.next() != Lexer.Kind.END && !lexer.isWord("interface")) {
+      // unit directives
+    }
+    scanDeclarations(null);
+    return new UnitSummary(unitName, symbols);
+  }
+
+  /**
+   * Scans the declarations of the interface section, or the members of the type {@code container}, up to the end of
+   * the section or of the type.
+   */
+  private void scanDeclarations(@Nullable String container) {
+    Section section = container == null ? Section.NONE : Section.VAR;
+    while (true) {
+      Lexer.Kind kind = lexer.next();
+      if (kind == Lexer.Kind.END || lexer.isWord("implementation")) {
+        return;
+      }
+      if (kind == Lexer.Kind.SYMBOL) {
+        if (lexer.isSymbol('[')) {
+          skipNested(']');
+        }
+        continue;
+      }
+      if (kind != Lexer.Kind.WORD) {
+        continue;
+      }
+
+      if (container != null && lexer.isWord("end")) {
+        skipSemicolon();
+        return;
+      }
+      if (container != null && lexer.isWord("case")) {
+        // variant part of a record: its fields are read from within the parentheses of each variant
+        skipToWord("of");
+        continue;
+      }
+      if (lexer.isWord("uses")) {
+        UsesScanner.readClause(lexer, new ArrayList<>());
+      } else if (lexer.isWord("type")) {
+        section = Section.TYPE;
+      } else if (lexer.isWord("const") || lexer.isWord("resourcestring")) {
+        section = Section.CONST;
+      } else if (lexer.isWord("var") || lexer.isWord("threadvar")) {
+        section = Section.VAR;
+      } else if (container != null && (VISIBILITIES.contains(lower()) || lexer.isWord("class"))) {
+        // visibility sections and class members: fields follow, unless another keyword comes
+        section = lexer.isWord("class") ? section : Section.VAR;
+      } else if (isRoutine()) {
+        readRoutine(container);
+      } else if (lexer.isWord("property")) {
+        readProperty(container);
+      } else if (!isIdentifier()) {
+        // numbers, like the selectors of record variants
+        continue;
+      } else if (section == Section.TYPE) {
+        readType(container);
+      } else if (section == Section.CONST) {
+        readNamed(Kind.CONSTANT, container);
+      } else if (section == Section.VAR) {
+        readVariables(container == null ? Kind.VARIABLE : Kind.FIELD, container);
+      }
+    }
+  }
+
+  private boolean isIdentifier() {
+    char first = lexer.text().charAt(0);
+    return first == '_' || Character.isLetter(first);
+  }
+
+  private void skipToWord(String lowerCase) {
+    while (lexer.next() != Lexer.Kind.END && !lexer.isWord(lowerCase)) {
+      // skip
+    }
+  }
+
+  private boolean isRoutine() {
+    return ROUTINES.contains(lower());
+  }
+
+  private void readRoutine(@Nullable String container) {
+    int start = lexer.start();
+    if (lexer.next() != Lexer.Kind.WORD) {
+      lexer.pushBack();
+      return;
+    }
+    String name = lexer.text();
+    int end = skipToSemicolon();
+    symbols.add(new ExportedSymbol(container == null ? Kind.ROUTINE : Kind.METHOD, name, container, signature(start, end)));
+    skipDirectives();
+  }
+
+  private void readProperty(@Nullable String container) {
+    int start = lexer.start();
+    if (lexer.next() != Lexer.Kind.WORD) {
+      lexer.pushBack();
+      return;
+    }
+    String name = lexer.text();
+    int end = skipToSemicolon();
+    symbols.add(new ExportedSymbol(Kind.PROPERTY, name, container, signature(start, end)));
+    skipDirectives();
+  }
+
+  /**
+   * Reads {@code Name[<T>] = ...;}, with the members of classes, records and interfaces.
+   */
+  private void readType(@Nullable String container) {
+    int start = lexer.start();
+    String name = lexer.text();
+    lexer.next();
+    if (lexer.isSymbol('<')) {
+      skipNested('>');
+      lexer.next();
+    }
+    if (!lexer.isSymbol('=')) {
+      skipToSemicolon();
+      return;
+    }
+
+    lexer.next();
+    if (lexer.isWord("type")) {
+      lexer.next();
+    }
+    if (lexer.isWord("packed")) {
+      lexer.next();
+    }
+    if (lexer.isWord("class") || lexer.isWord("object") || lexer.isWord("interface") || lexer.isWord("dispinterface")) {
+      readStructuredType(start, name, container);
+    } else if (lexer.isWord("record")) {
+      symbols.add(new ExportedSymbol(Kind.TYPE, name, container, signature(start, lexer.end())));
+      scanDeclarations(name);
+    } else {
+      lexer.pushBack();
+      int end = skipToSemicolon();
+      symbols.add(new ExportedSymbol(Kind.TYPE, name, container, signature(start, end)));
+      skipDirectives();
+    }
+  }
+
+  /**
+   * Reads a class, object or interface type, from its keyword. Forward declarations, like {@code TFoo = class;}, and
+   * class references, like {@code TFooClass = class of TFoo;}, have no members.
+   */
+  private void readStructuredType(int start, String name, @Nullable String container) {
+    lexer.next();
+    if (lexer.isSymbol(';')) {
+      return;
+    }
+    if (lexer.isWord("of")) {
+      int end = skipToSemicolon();
+      symbols.add(new ExportedSymbol(Kind.TYPE, name, container, signature(start, end)));
+      return;
+    }
+    // class modifiers, helper target, ancestors and interface GUID
+    while (true) {
+      if (lexer.isSymbol('(')) {
+        skipNested(')');
+      } else if (lexer.isSymbol('[')) {
+        skipNested(']');
+      } else if (lexer.isWord("for")) {
+        lexer.next();
+        lexer.dottedName();
+      } else if (!lexer.isWord("abstract") && !lexer.isWord("sealed") && !lexer.isWord("helper")) {
+        break;
+      }
+      lexer.next();
+    }
+    symbols.add(new ExportedSymbol(Kind.TYPE, name, container, signature(start, lexer.start())));
+    if (lexer.isSymbol(';')) {
+      // class with ancestors and no members, like TFoo = class(TBar);
+      return;
+    }
+    lexer.pushBack();
+    scanDeclarations(name);
+  }
+
+  /**
+   * Reads {@code Name = value;} or {@code Name: Type = value;}.
+   */
+  private void readNamed(Kind kind, @Nullable String container) {
+    int start = lexer.start();
+    String name = lexer.text();
+    int end = skipToSemicolon();
+    symbols.add(new ExportedSymbol(kind, name, container, signature(start, end)));
+    skipDirectives();
+  }
+
+  /**
+   * Reads {@code A, B: Type;}, including inline records.
+   */
+  private void readVariables(Kind kind, @Nullable String container) {
+    int start = lexer.start();
+    List<String> names = new ArrayList<>();
+    names.add(lexer.text());
+    while (lexer.next() == Lexer.Kind.SYMBOL && lexer.isSymbol(',') && lexer.next() == Lexer.Kind.WORD) {
+      names.add(lexer.text());
+    }
+    if (!lexer.isSymbol(':')) {
+      lexer.pushBack();
+      return;
+    }
+    lexer.next();
+    int end;
+    if (lexer.isWord("packed")) {
+      lexer.next();
+    }
+    if (lexer.isWord("record")) {
+      skipStructured();
+      end = lexer.end();
+      skipSemicolon();
+    } else {
+      lexer.pushBack();
+      end = skipToSemicolon();
+    }
+    String signature = signature(start, end);
+    for (String name : names) {
+      symbols.add(new ExportedSymbol(kind, name, container, signature));
+    }
+    skipDirectives();
+  }
+
+  private void skipDirectives() {
+    while (lexer.next() == Lexer.Kind.WORD && DIRECTIVES.contains(lower())) {
+      skipToSemicolon();
+    }
+    lexer.pushBack();
+  }
+
+  /**
+   * Skips up to the semicolon which ends the current declaration, ignoring the ones between parentheses or brackets.
+   *
+   * @return the offset before the semicolon
+   */
+  private int skipToSemicolon() {
+    int depth = 0;
+    int end = lexer.end();
+    while (true) {
+      Lexer.Kind kind = lexer.next();
+      if (kind == Lexer.Kind.END) {
+        return end;
+      }
+      if (lexer.isSymbol('(') || lexer.isSymbol('[')) {
+        depth++;
+      } else if (lexer.isSymbol(')') || lexer.isSymbol(']')) {
+        if (depth == 0) {
+          // end of a record variant
+          return end;
+        }
+        depth--;
+      } else if (depth == 0 && lexer.isSymbol(';')) {
+        return end;
+      } else if (depth == 0 && (lexer.isWord("implementation") || lexer.isWord("end"))) {
+        // missing semicolon
+        lexer.pushBack();
+        return end;
+      }
+      end = lexer.end();
+    }
+  }
+
+  private void skipSemicolon() {
+    if (lexer.next() != Lexer.Kind.SYMBOL || !lexer.isSymbol(';')) {
+      lexer.pushBack();
+    }
+  }
+
+  /**
+   * Skips up to the closing symbol matching the current opening one.
+   */
+  private void skipNested(char closing) {
+    char opening = closing == ']' ? '[' : (closing == ')' ? '(' : '<');
+    int depth = 1;
+    while (depth > 0 && lexer.next() != Lexer.Kind.END) {
+      if (lexer.isSymbol(opening)) {
+        depth++;
+      } else if (lexer.isSymbol(closing)) {
+        depth--;
+      }
+    }
+  }
+
+  /**
+   * Skips a record, from its keyword to its {@code end}.
+   */
+  private void skipStructured() {
+    int depth = 1;
+    while (depth > 0 && lexer.next() != Lexer.Kind.END) {
+      if (lexer.isWord("record") || lexer.isWord("class") && !isClassMember() || lexer.isWord("interface")) {
+        depth++;
+      } else if (lexer.isWord("end")) {
+        depth--;
+      }
+    }
+  }
+
+  private boolean isClassMember() {
+    lexer.next();
+    boolean member = lexer.kind() == Lexer.Kind.WORD && (isRoutine() || lexer.isWord("property") || lexer.isWord("var"));
+    lexer.pushBack();
+    return member;
+  }
+
+  private String lower() {
+    return lexer.text().toLowerCase(Locale.ENGLISH);
+  }
+
+  private String signature(int start, int end) {
+    StringBuilder signature = new StringBuilder();
+    Lexer tokens = new Lexer(lexer.source(start, Math.max(start, end)));
+    while (tokens.next() != Lexer.Kind.END && signature.length() < MAX_SIGNATURE_LENGTH) {
+      if (signature.length() > 0 && needsSpace(signature.charAt(signature.length() - 1), tokens)) {
+        signature.append(' ');
+      }
+      signature.append(tokens.source(tokens.start(), tokens.end()));
+    }
+    return signature.length() > MAX_SIGNATURE_LENGTH ? signature.substring(0, MAX_SIGNATURE_LENGTH) : signature.toString();
+  }
+
+  private static boolean needsSpace(char previous, Lexer tokens) {
+    boolean previousIsWord = Character.isLetterOrDigit(previous) || previous == '_' || previous == '\'' || previous == ']' || previous == ')';
+    return previousIsWord && (tokens.kind() == Lexer.Kind.WORD || tokens.kind() == Lexer.Kind.STRING)
+      || previous == ':' || previous == ',' || previous == ';' || tokens.isSymbol('=') || previous == '=';
+  }
+
+}
@@ -0,0 +1,230 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import java.util.Locale;
+
+/**
+ * Minimal Delphi lexer for the scanners of this package: it tells identifiers, strings and symbols apart, and skips
+ * whitespaces, comments and compiler directives. Numbers come out as words, and symbols as single characters.
+ */
+final class Lexer {
+
+  enum Kind {
+    WORD, STRING, SYMBOL, END
+  }
+
+  private final String source;
+  private int position = 0;
+
+  private Kind kind;
+  private int start;
+  private int end;
+  private String lowerCaseWord;
+
+  private boolean pushedBack = false;
+
+  Lexer(String source) {
+    this.source = source;
+  }
+
+  /**
+   * Moves to the next token, or gives back the current one again after {@link #pushBack()}.
+   */
+  Kind next() {
+    if (pushedBack) {
+      pushedBack = false;
+      return kind;
+    }
+    skipTrivia();
+    start = position;
+    lowerCaseWord = null;
+    if (position >= source.length()) {
+      kind = Kind.END;
+    } else if (isIdentifierStart(position)) {
+      readIdentifier();
+      kind = Kind.WORD;
+    } else if (source.charAt(position) == '\'' || (source.charAt(position) == '#' && position + 1 < source.length())) {
+      readStringOrCharacter();
+      kind = Kind.STRING;
+    } else {
+      position++;
+      kind = Kind.SYMBOL;
+    }
+    end = position;
+    return kind;
+  }
+
+  /**
+   * Makes the next call of {@link #next()} return the current token again.
+   */
+  void pushBack() {
+    pushedBack = true;
+  }
+
+  Kind kind() {
+    return kind;
+  }
+
+  /**
+   * Text of the current token, without the {@code &} of escaped identifiers.
+   */
+  String text() {
+    int textStart = kind == Kind.WORD && source.charAt(start) == '&' ? (start + 1) : start;
+    return source.substring(textStart, end);
+  }
+
+  boolean isWord(String lowerCase) {
+    if (kind != Kind.WORD) {
+      return false;
+    }
+    if (lowerCaseWord == null) {
+      lowerCaseWord = text().toLowerCase(Locale.ENGLISH);
+    }
+    return lowerCaseWord.equals(lowerCase);
+  }
+
+  boolean isSymbol(char symbol) {
+    return kind == Kind.SYMBOL && source.charAt(start) == symbol;
+  }
+
+  int start() {
+    return start;
+  }
+
+  int end() {
+    return end;
+  }
+
+  String source(int from, int to) {
+    return source.substring(from, to);
+  }
+
+  /**
+   * Reads a possibly dotted name, like {@code System.SysUtils}, starting with the current token.
+   *
+   * @return the name, {@code null} if the current token is not a word
+   */
+  String dottedName() {
+    if (kind != Kind.WORD) {
+      return null;
+    }
+    StringBuilder name = new StringBuilder(text());
+    while (true) {
+      next();
+      if (!isSymbol('.')) {
+        pushBack();
+        return name.toString();
+      }
+      if (next() != Kind.WORD) {
+        pushBack();
+        return name.toString();
+      }
+      name.append('.').append(text());
+    }
+  }
+
+  private void readIdentifier() {
+    if (source.charAt(position) == '&') {
+      // escaped reserved word, like &Type
+      position++;
+    }
+    while (position < source.length() && isIdentifierPart(source.charAt(position))) {
+      position++;
+    }
+  }
+
+  /**
+   * Reads a string literal, possibly mixed with character codes like {@code 'a'#13#10'b'}.
+   */
+  private void readStringOrCharacter() {
+    while (position < source.length()) {
+      char c = source.charAt(position);
+      if (c == '\'') {
+        readQuoted();
+      } else if (c == '#') {
+        position++;
+        while (position < source.length() && (source.charAt(position) == '$' || Character.isLetterOrDigit(source.charAt(position)))) {
+          position++;
+        }
+      } else {
+        return;
+      }
+    }
+  }
+
+  private void readQuoted() {
+    position++;
+    while (position < source.length()) {
+      char c = source.charAt(position++);
+      if (c == '\'') {
+        if (position < source.length() && source.charAt(position) == '\'') {
+          position++;
+        } else {
+          return;
+        }
+      } else if (c == '\n' || c == '\r') {
+        // unterminated string
+        return;
+      }
+    }
+  }
+
+  private void skipTrivia() {
+    while (position < source.length()) {
+      char c = source.charAt(position);
+      if (Character.isWhitespace(c) || c == '\uFEFF') {
+        position++;
+      } else if (c == '{') {
+        position = indexAfter("}", position + 1);
+      } else if (c == '(' && source.startsWith("(*", position)) {
+        position = indexAfter("*)", position + 2);
+      } else if (c == '/' && source.startsWith("//", position)) {
+        position = indexAfterLine(position + 2);
+      } else {
+        return;
+      }
+    }
+  }
+
+  private int indexAfter(String terminator, int from) {
+    int index = source.indexOf(terminator, from);
+    return index < 0 ? source.length() : (index + terminator.length());
+  }
+
+  private int indexAfterLine(int from) {
+    int index = from;
+    while (index < source.length() && source.charAt(index) != '\n' && source.charAt(index) != '\r') {
+      index++;
+    }
+    return index;
+  }
+
+  private boolean isIdentifierStart(int index) {
+    char c = source.charAt(index);
+    return c == '_' || Character.isLetterOrDigit(c)
+      || (c == '&' && index + 1 < source.length() && Character.isLetter(source.charAt(index + 1)));
+  }
+
+  private static boolean isIdentifierPart(char c) {
+    return c == '_' || Character.isLetterOrDigit(c);
+  }
+
+}
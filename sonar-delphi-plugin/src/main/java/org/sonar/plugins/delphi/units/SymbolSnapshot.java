@@ -0,0 +1,213 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.delphi.DelphiPlugin;
+
+/**
+ * Prebuilt interface summaries of the units of the Delphi standard library (RTL, VCL, FMX) of one compiler version.
+ * <p>
+ * No snapshot is bundled with the plugin: users generate one from the sources of their Delphi installation with the
+ * {@link SymbolSnapshotGenerator}, and configure its path. A snapshot file is decoded once per JVM as long as its size
+ * and modification time don't change, so modules and SonarLint analyses share the same instance, and its lookups are
+ * hash table lookups. A file which cannot be read is tried again by the next analysis. Immutable and safe to use from
+ * several analysis threads.
+ */
+public final class SymbolSnapshot {
+
+  private static final Logger LOG = Loggers.get(SymbolSnapshot.class);
+
+  private static final int MAGIC = 0x44535953;
+  private static final int FORMAT_VERSION = 1;
+
+  private static final SymbolSnapshot EMPTY = new SymbolSnapshot("", Collections.emptyList());
+  private static final Map<String, SymbolSnapshot> LOADED = new ConcurrentHashMap<>();
+
+  private final String compilerVersion;
+  private final List<UnitSummary> units;
+  private final Map<String, UnitSummary> unitsByName = new HashMap<>();
+
+  /**
+   * Units by lower case name of the unit level symbols they declare.
+   */
+  private final Map<String, List<String>> unitsBySymbol = new HashMap<>();
+
+  public SymbolSnapshot(String compilerVersion, Collection<UnitSummary> units) {
+    this.compilerVersion = compilerVersion;
+    this.units = new ArrayList<>(units);
+    Set<String> ambiguousAliases = new HashSet<>();
+    Map<String, UnitSummary> aliases = new HashMap<>();
+    for (UnitSummary unit : units) {
+      String name = unit.unitName().toLowerCase(Locale.ENGLISH);
+      unitsByName.put(name, unit);
+      // units of the standard library are usually referred to without their unit scope, like SysUtils for System.SysUtils
+      String alias = name.substring(name.lastIndexOf('.') + 1);
+      if (!alias.equals(name) && aliases.put(alias, unit) != null) {
+        ambiguousAliases.add(alias);
+      }
+      for (ExportedSymbol symbol : unit.symbols()) {
+        if (symbol.container() == null) {
+          unitsBySymbol.computeIfAbsent(symbol.name().toLowerCase(Locale.ENGLISH), k -> new ArrayList<>(1)).add(unit.unitName());
+        }
+      }
+    }
+    aliases.keySet().removeAll(ambiguousAliases);
+    aliases.forEach(unitsByName::putIfAbsent);
+  }
+
+  public static SymbolSnapshot empty() {
+    return EMPTY;
+  }
+
+  /**
+   * File of the snapshot configured for the module, resolved against its base directory, if any.
+   */
+  public static Optional<Path> configuredFile(SensorContext context) {
+    return context.config().get(DelphiPlugin.SYMBOL_SNAPSHOT)
+      .map(String::trim)
+      .filter(setting -> !setting.isEmpty())
+      .map(setting -> context.fileSystem().resolvePath(setting).toPath());
+  }
+
+  /**
+   * Size and modification time of a snapshot file, which change when it is generated again, empty if the file cannot
+   * be read.
+   */
+  public static String fileVersion(Path file) {
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+      return attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+    } catch (IOException e) {
+      return "";
+    }
+  }
+
+  /**
+   * Returns the snapshot stored in {@code file}, and the empty snapshot if the file cannot be read. Only snapshots which
+   * could be read are kept for the next calls.
+   */
+  public static SymbolSnapshot load(Path file) {
+    Path absoluteFile = file.toAbsolutePath().normalize();
+    String version = fileVersion(absoluteFile);
+    if (version.isEmpty()) {
+      LOG.warn("No Delphi symbol snapshot found at \"{}\", standard library units are not known to the analysis", absoluteFile);
+      return EMPTY;
+    }
+    String prefix = absoluteFile + "@";
+    String key = prefix + version;
+    // the snapshot was generated again: the previous one is not used anymore
+    LOADED.keySet().removeIf(loaded -> loaded.startsWith(prefix) && !loaded.equals(key));
+    SymbolSnapshot snapshot = LOADED.computeIfAbsent(key, k -> read(absoluteFile));
+    return snapshot == null ? EMPTY : snapshot;
+  }
+
+  @CheckForNull
+  private static SymbolSnapshot read(Path file) {
+    long start = System.nanoTime();
+    try (InputStream stream = Files.newInputStream(file)) {
+      SymbolSnapshot snapshot = readFrom(new DataInputStream(new BufferedInputStream(stream)));
+      LOG.debug("Delphi symbol snapshot {} ({} units) loaded in {} ms", snapshot.compilerVersion, snapshot.unitCount(),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      return snapshot;
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Unable to read Delphi symbol snapshot \"" + file + "\", standard library units are not known to the analysis", e);
+      return null;
+    }
+  }
+
+  public String compilerVersion() {
+    return compilerVersion;
+  }
+
+  public int unitCount() {
+    return units.size();
+  }
+
+  public boolean isEmpty() {
+    return units.isEmpty();
+  }
+
+  /**
+   * Summary of the unit with this name, with or without its unit scope, compared case-insensitively.
+   */
+  @CheckForNull
+  public UnitSummary summary(String unitName) {
+    return unitsByName.get(unitName.toLowerCase(Locale.ENGLISH));
+  }
+
+  /**
+   * Full names of the units declaring a unit level symbol with this name, compared case-insensitively.
+   */
+  public List<String> unitsDeclaring(String symbolName) {
+    List<String> units = unitsBySymbol.get(symbolName.toLowerCase(Locale.ENGLISH));
+    return units == null ? Collections.emptyList() : Collections.unmodifiableList(units);
+  }
+
+  void writeTo(Path file) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeUTF(compilerVersion);
+      out.writeInt(units.size());
+      for (UnitSummary unit : units) {
+        unit.writeTo(out);
+      }
+    }
+  }
+
+  private static SymbolSnapshot readFrom(DataInputStream in) throws IOException {
+    if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+      throw new IOException("Not a symbol snapshot of this plugin version");
+    }
+    String compilerVersion = in.readUTF();
+    int count = in.readInt();
+    List<UnitSummary> units = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      units.add(UnitSummary.readFrom(in));
+    }
+    return new SymbolSnapshot(compilerVersion, units);
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Builds the {@link SymbolSnapshot} of a Delphi installation from the sources of its standard library, usually the
+ * {@code source} directory of the installation. It ships with the plugin, and runs from its jar with the plugin API on
+ * the class path:
+ * <pre>
+ *   java -cp sonar-delphi-plugin.jar:sonar-plugin-api.jar org.sonar.plugins.delphi.units.SymbolSnapshotGenerator &lt;source directory&gt; &lt;compiler version&gt; &lt;output file&gt;
+ * </pre>
+ * The output file is referred to by its path in the analysis settings.
+ */
+public final class SymbolSnapshotGenerator {
+
+  private static final Logger LOG = Loggers.get(SymbolSnapshotGenerator.class);
+
+  private static final Charset FALLBACK_CHARSET = Charset.forName("windows-1252");
+
+  private SymbolSnapshotGenerator() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 3) {
+      throw new IllegalArgumentException("Usage: SymbolSnapshotGenerator <source directory> <compiler version> <output file>");
+    }
+    Path sourceDirectory = Paths.get(args[0]);
+    if (!Files.isDirectory(sourceDirectory)) {
+      throw new IllegalArgumentException("Not a directory: " + sourceDirectory);
+    }
+    SymbolSnapshot snapshot = generate(sourceDirectory, args[1]);
+    snapshot.writeTo(Paths.get(args[2]));
+    LOG.info("Wrote {} units to {}", snapshot.unitCount(), args[2]);
+  }
+
+  static SymbolSnapshot generate(Path sourceDirectory, String compilerVersion) throws IOException {
+    List<Path> files;
+    try (Stream<Path> paths = Files.walk(sourceDirectory)) {
+      files = paths
+        .filter(path -> path.getFileName().toString().toLowerCase(Locale.ENGLISH).endsWith(".pas"))
+        .sorted()
+        .collect(Collectors.toList());
+    }
+    List<UnitSummary> units = new ArrayList<>();
+    for (Path file : files) {
+      UnitSummary summary = InterfaceScanner.scan(read(file));
+      if (summary != null) {
+        units.add(summary);
+      }
+    }
+    return new SymbolSnapshot(compilerVersion, units);
+  }
+
+  private static String read(Path file) throws IOException {
+    byte[] bytes = Files.readAllBytes(file);
+    try {
+      return StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)).toString();
+    } catch (CharacterCodingException e) {
+      return new String(bytes, FALLBACK_CHARSET);
+    }
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Name of a unit, program, library or package, and the units it uses, as declared in its source file.
+ */
+public final class UnitDeclaration {
+
+  private final String name;
+  private final List<String> interfaceUses;
+  private final List<String> implementationUses;
+
+  public UnitDeclaration(String name, List<String> interfaceUses, List<String> implementationUses) {
+    this.name = name;
+    this.interfaceUses = Collections.unmodifiableList(new ArrayList<>(interfaceUses));
+    this.implementationUses = Collections.unmodifiableList(new ArrayList<>(implementationUses));
+  }
+
+  public String name() {
+    return name;
+  }
+
+  /**
+   * Units of the {@code uses} clause of the interface section. For programs, libraries and packages, units of their
+   * single {@code uses} or {@code contains} clause.
+   */
+  public List<String> interfaceUses() {
+    return interfaceUses;
+  }
+
+  public List<String> implementationUses() {
+    return implementationUses;
+  }
+
+  public List<String> allUses() {
+    List<String> all = new ArrayList<>(interfaceUses.size() + implementationUses.size());
+    all.addAll(interfaceUses);
+    all.addAll(implementationUses);
+    return all;
+  }
+
+  void writeTo(DataOutput out) throws IOException {
+    out.writeUTF(name);
+    writeNames(out, interfaceUses);
+    writeNames(out, implementationUses);
+  }
+
+  static UnitDeclaration readFrom(DataInput in) throws IOException {
+    String name = in.readUTF();
+    List<String> interfaceUses = readNames(in);
+    List<String> implementationUses = readNames(in);
+    return new UnitDeclaration(name, interfaceUses, implementationUses);
+  }
+
+  private static void writeNames(DataOutput out, List<String> names) throws IOException {
+    out.writeInt(names.size());
+    for (String unitName : names) {
+      out.writeUTF(unitName);
+    }
+  }
+
+  private static List<String> readNames(DataInput in) throws IOException {
+    int count = in.readInt();
+    List<String> names = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      names.add(in.readUTF());
+    }
+    return names;
+  }
+
+}
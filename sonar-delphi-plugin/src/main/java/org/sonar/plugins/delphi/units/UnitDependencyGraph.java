@@ -0,0 +1,196 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.CheckForNull;
+
+/**
+ * Which units of the project use which, built from the {@link UnitDeclaration} of every main file. Unit names are
+ * compared case-insensitively, as in Delphi. Units which are used but not part of the project, like the RTL, are not
+ * nodes of the graph.
+ * <p>
+ * Immutable, and thus safe to share between analysis threads.
+ */
+public final class UnitDependencyGraph {
+
+  private static final UnitDependencyGraph EMPTY = new UnitDependencyGraph(Collections.emptyMap());
+
+  /**
+   * Declarations by relative path of their file.
+   */
+  private final Map<String, UnitDeclaration> declarationsByPath;
+  private final Map<String, String> pathsByUnit = new HashMap<>();
+  private final Map<String, List<String>> dependentsByUnit = new HashMap<>();
+
+  /**
+   * Files declaring a unit which another file declares too, by relative path, mapped to the path of the file which
+   * stands for the unit.
+   */
+  private final Map<String, String> duplicatePaths = new TreeMap<>();
+
+  UnitDependencyGraph(Map<String, UnitDeclaration> declarationsByPath) {
+    this.declarationsByPath = Collections.unmodifiableMap(new HashMap<>(declarationsByPath));
+    // the file with the first path in lexicographic order stands for a unit declared by several files, whatever the
+    // order in which the files are found
+    Map<String, UnitDeclaration> sortedDeclarations = new TreeMap<>(declarationsByPath);
+    sortedDeclarations.forEach((path, declaration) -> {
+      String winner = pathsByUnit.putIfAbsent(key(declaration.name()), path);
+      if (winner != null) {
+        duplicatePaths.put(path, winner);
+      }
+    });
+    for (Map.Entry<String, UnitDeclaration> entry : sortedDeclarations.entrySet()) {
+      if (duplicatePaths.containsKey(entry.getKey())) {
+        continue;
+      }
+      UnitDeclaration declaration = entry.getValue();
+      for (String used : declaration.allUses()) {
+        if (pathsByUnit.containsKey(key(used))) {
+          dependentsByUnit.computeIfAbsent(key(used), k -> new ArrayList<>()).add(declaration.name());
+        }
+      }
+    }
+  }
+
+  public static UnitDependencyGraph empty() {
+    return EMPTY;
+  }
+
+  public int size() {
+    return declarationsByPath.size();
+  }
+
+  /**
+   * Names of the units of the project, as declared, once each.
+   */
+  public List<String> units() {
+    List<String> units = new ArrayList<>(pathsByUnit.size());
+    for (String path : pathsByUnit.values()) {
+      units.add(declarationsByPath.get(path).name());
+    }
+    return units;
+  }
+
+  /**
+   * Files ignored because the unit they declare is declared by another file too, by relative path, mapped to the path
+   * of the file which stands for the unit in the graph.
+   */
+  public Map<String, String> duplicatePaths() {
+    return Collections.unmodifiableMap(duplicatePaths);
+  }
+
+  @CheckForNull
+  public UnitDeclaration declarationOf(String relativePath) {
+    return declarationsByPath.get(relativePath);
+  }
+
+  @CheckForNull
+  public String pathOf(String unitName) {
+    return pathsByUnit.get(key(unitName));
+  }
+
+  public boolean contains(String unitName) {
+    return pathsByUnit.containsKey(key(unitName));
+  }
+
+  /**
+   * Units of the project used by the unit, in the order of its {@code uses} clauses.
+   */
+  public List<String> dependencies(String unitName) {
+    String path = pathOf(unitName);
+    if (path == null) {
+      return Collections.emptyList();
+    }
+    List<String> dependencies = new ArrayList<>();
+    for (String used : declarationsByPath.get(path).allUses()) {
+      if (contains(used)) {
+        dependencies.add(used);
+      }
+    }
+    return dependencies;
+  }
+
+  /**
+   * Units of the project which use the unit.
+   */
+  public List<String> dependents(String unitName) {
+    return Collections.unmodifiableList(dependentsByUnit.getOrDefault(key(unitName), Collections.emptyList()));
+  }
+
+  /**
+   * Units of the project which the unit uses, directly or through other units of the project.
+   */
+  public Set<String> transitiveDependencies(String unitName) {
+    Set<String> visited = new LinkedHashSet<>();
+    // uses clauses can spell a unit name with any case
+    Set<String> visitedKeys = new HashSet<>();
+    visitedKeys.add(key(unitName));
+    Deque<String> pending = new ArrayDeque<>(dependencies(unitName));
+    while (!pending.isEmpty()) {
+      String unit = pending.poll();
+      if (visitedKeys.add(key(unit))) {
+        visited.add(unit);
+        pending.addAll(dependencies(unit));
+      }
+    }
+    return visited;
+  }
+
+  /**
+   * Units which use the unit, directly or through at most {@code maxDepth} intermediate units. A negative depth has no
+   * limit.
+   */
+  public Set<String> transitiveDependents(String unitName, int maxDepth) {
+    Set<String> visited = new LinkedHashSet<>();
+    Deque<String> current = new ArrayDeque<>();
+    current.add(unitName);
+    int depth = 0;
+    while (!current.isEmpty() && (maxDepth < 0 || depth <= maxDepth)) {
+      Deque<String> next = new ArrayDeque<>();
+      for (String unit : current) {
+        for (String dependent : dependents(unit)) {
+          if (!dependent.equalsIgnoreCase(unitName) && visited.add(dependent)) {
+            next.add(dependent);
+          }
+        }
+      }
+      current = next;
+      depth++;
+    }
+    return visited;
+  }
+
+  private static String key(String unitName) {
+    return unitName.toLowerCase(Locale.ENGLISH);
+  }
+
+}
@@ -0,0 +1,334 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import com.google.common.hash.Hashing;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.delphi.cache.AnalysisCache;
+
+/**
+ * Builds the {@link UnitDependencyGraph} and the {@link UnitSummaries} of the project with a pre-pass over all its main
+ * files, and persists what was found so that the next analysis only scans the files whose size or modification time
+ * changed, or whose contents the analysis found to differ from the index.
+ */
+public final class UnitDependencyIndexer {
+
+  private static final Logger LOG = Loggers.get(UnitDependencyIndexer.class);
+
+  private static final int FORMAT_VERSION = 3;
+  public static final String INDEX_FILE_NAME = "units.bin";
+  private static final String SUMMARIES_DIRECTORY = "summaries";
+
+  /**
+   * Reads the contents of a file, so that the sensor decides how files are read.
+   */
+  @FunctionalInterface
+  public interface SourceLoader {
+    String load(InputFile inputFile) throws IOException;
+  }
+
+  private final Path indexFile;
+  private final Path summariesDirectory;
+  private final SourceLoader sourceLoader;
+  private UnitSummaries summaries = UnitSummaries.empty();
+  private UnitDependencyGraph previousGraph = UnitDependencyGraph.empty();
+
+  /**
+   * Entries of the last {@link #index}, by relative path.
+   */
+  private final Map<String, Entry> current = new ConcurrentHashMap<>();
+  private volatile boolean staleEntries = false;
+
+  public UnitDependencyIndexer(Path indexFile, SourceLoader sourceLoader) {
+    this.indexFile = indexFile;
+    this.summariesDirectory = indexFile.resolveSibling(SUMMARIES_DIRECTORY);
+    this.sourceLoader = sourceLoader;
+  }
+
+  /**
+   * Interface summaries of the units found by the last {@link #index}.
+   */
+  public UnitSummaries summaries() {
+    return summaries;
+  }
+
+  /**
+   * Graph persisted by the previous analysis, read by the last {@link #index}. It still knows the units deleted or
+   * renamed since then.
+   */
+  public UnitDependencyGraph previousGraph() {
+    return previousGraph;
+  }
+
+  public UnitDependencyGraph index(Iterable<InputFile> inputFiles) {
+    long start = System.nanoTime();
+    Map<String, Entry> previous = load();
+    previousGraph = graph(previous);
+    current.clear();
+    staleEntries = false;
+    int scanned = 0;
+
+    for (InputFile inputFile : inputFiles) {
+      String path = inputFile.relativePath();
+      BasicFileAttributes attributes;
+      try {
+        attributes = Files.readAttributes(inputFile.path(), BasicFileAttributes.class);
+      } catch (IOException e) {
+        LOG.debug("Unable to read attributes of " + inputFile + ", it is not part of the unit dependency graph", e);
+        continue;
+      }
+      long size = attributes.size();
+      long lastModified = attributes.lastModifiedTime().toMillis();
+
+      Entry entry = previous.get(path);
+      if (entry == null || entry.size != size || entry.lastModified != lastModified) {
+        entry = scan(inputFile, size, lastModified);
+        scanned++;
+      }
+      current.put(path, entry);
+    }
+
+    save(current);
+
+    UnitDependencyGraph graph = graph(current);
+    graph.duplicatePaths().forEach((path, winner) ->
+      LOG.warn("{} declares the same unit as {}, only {} is part of the unit dependency graph", path, winner, winner));
+    Map<String, String> hashesByUnit = new HashMap<>();
+    Map<String, String> interfaceHashesByUnit = new HashMap<>();
+    current.forEach((path, entry) -> {
+      // the summaries of a unit declared by several files are the ones of the file which stands for it in the graph
+      if (entry.declaration != null && path.equals(graph.pathOf(entry.declaration.name()))) {
+        String unit = entry.declaration.name().toLowerCase(Locale.ENGLISH);
+        hashesByUnit.put(unit, entry.contentHash);
+        interfaceHashesByUnit.put(unit, entry.interfaceHash);
+      }
+    });
+    deleteUnusedSummaries(current);
+    summaries = new UnitSummaries(summariesDirectory, hashesByUnit, interfaceHashesByUnit);
+    LOG.info("Unit dependency graph of {} units built in {} ms, {} files scanned", graph.size(),
+      TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), scanned);
+    return graph;
+  }
+
+  /**
+   * Tells whether the last {@link #index} saw these contents of the file. Files are only scanned again when their size
+   * or modification time changed, which misses an edit keeping both, so the analysis compares the contents it reads
+   * with the index. When they differ, the entry of the file is marked as outdated for the next analysis to scan the
+   * file again, see {@link #saveStaleEntries()}.
+   *
+   * @return {@code false} if the file was indexed with other contents
+   */
+  public boolean matchesIndex(InputFile inputFile, String contentHash) {
+    String path = inputFile.relativePath();
+    Entry entry = current.get(path);
+    if (entry == null || entry.contentHash.equals(contentHash)) {
+      return true;
+    }
+    LOG.debug("{} changed without changing size nor modification time, it will be scanned again by the next analysis", inputFile);
+    current.put(path, entry.outdated());
+    staleEntries = true;
+    return false;
+  }
+
+  /**
+   * Persists the entries marked as outdated by {@link #matchesIndex} since the last {@link #index}.
+   */
+  public void saveStaleEntries() {
+    if (staleEntries) {
+      save(current);
+      staleEntries = false;
+    }
+  }
+
+  private static UnitDependencyGraph graph(Map<String, Entry> entries) {
+    Map<String, UnitDeclaration> declarations = new HashMap<>();
+    entries.forEach((path, entry) -> {
+      if (entry.declaration != null) {
+        declarations.put(path, entry.declaration);
+      }
+    });
+    return new UnitDependencyGraph(declarations);
+  }
+
+  private Entry scan(InputFile inputFile, long size, long lastModified) {
+    String contents;
+    try {
+      contents = sourceLoader.load(inputFile);
+    } catch (IOException e) {
+      LOG.debug("Unable to read " + inputFile + ", it is not part of the unit dependency graph", e);
+      return new Entry(size, lastModified, "", "", null);
+    }
+    String contentHash = AnalysisCache.contentHash(contents);
+    String interfaceHash = "";
+    UnitDeclaration declaration = UsesScanner.scan(contents);
+    if (declaration != null) {
+      UnitSummary summary = InterfaceScanner.scan(contents);
+      if (summary != null) {
+        try {
+          UnitSummaries.write(summariesDirectory, contentHash, summary);
+        } catch (IOException e) {
+          LOG.debug("Unable to write the interface summary of " + inputFile, e);
+        }
+      }
+      interfaceHash = interfaceHash(declaration, summary);
+    }
+    return new Entry(size, lastModified, contentHash, interfaceHash, declaration);
+  }
+
+  /**
+   * Hash of what other units see of a unit: its {@code uses} clauses and its interface summary. It does not change
+   * when only the implementation of the unit does.
+   */
+  static String interfaceHash(UnitDeclaration declaration, @Nullable UnitSummary summary) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      declaration.writeTo(out);
+      out.writeBoolean(summary != null);
+      if (summary != null) {
+        summary.writeTo(out);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to hash the interface of unit " + declaration.name(), e);
+    }
+    return Hashing.sha256().hashBytes(bytes.toByteArray()).toString();
+  }
+
+  /**
+   * Summaries are shared by files with the same contents, and deleted once no file has these contents anymore.
+   */
+  private void deleteUnusedSummaries(Map<String, Entry> entries) {
+    if (!Files.isDirectory(summariesDirectory)) {
+      return;
+    }
+    Set<Path> used = new HashSet<>();
+    for (Entry entry : entries.values()) {
+      used.add(UnitSummaries.file(summariesDirectory, entry.contentHash));
+    }
+    try (Stream<Path> files = Files.list(summariesDirectory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        if (!used.contains(file)) {
+          Files.deleteIfExists(file);
+        }
+      }
+    } catch (IOException e) {
+      LOG.debug("Unable to clean interface summaries in " + summariesDirectory, e);
+    }
+  }
+
+  private Map<String, Entry> load() {
+    Map<String, Entry> entries = new HashMap<>();
+    if (!Files.isRegularFile(indexFile)) {
+      return entries;
+    }
+    try (DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(Files.newInputStream(indexFile))))) {
+      if (in.readInt() != FORMAT_VERSION) {
+        return entries;
+      }
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        String path = in.readUTF();
+        long size = in.readLong();
+        long lastModified = in.readLong();
+        String contentHash = in.readUTF();
+        String interfaceHash = in.readUTF();
+        UnitDeclaration declaration = in.readBoolean() ? UnitDeclaration.readFrom(in) : null;
+        entries.put(path, new Entry(size, lastModified, contentHash, interfaceHash, declaration));
+      }
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Unable to read the unit dependency index " + indexFile + ", all files will be scanned", e);
+      entries.clear();
+    }
+    return entries;
+  }
+
+  private void save(Map<String, Entry> entries) {
+    try {
+      Files.createDirectories(indexFile.getParent());
+      Path tempFile = indexFile.resolveSibling(INDEX_FILE_NAME + ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile))))) {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+          Entry entry = e.getValue();
+          out.writeUTF(e.getKey());
+          out.writeLong(entry.size);
+          out.writeLong(entry.lastModified);
+          out.writeUTF(entry.contentHash);
+          out.writeUTF(entry.interfaceHash);
+          out.writeBoolean(entry.declaration != null);
+          if (entry.declaration != null) {
+            entry.declaration.writeTo(out);
+          }
+        }
+      }
+      Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      LOG.warn("Unable to write the unit dependency index to " + indexFile, e);
+    }
+  }
+
+  private static class Entry {
+    private final long size;
+    private final long lastModified;
+    private final String contentHash;
+    private final String interfaceHash;
+    @Nullable
+    private final UnitDeclaration declaration;
+
+    Entry(long size, long lastModified, String contentHash, String interfaceHash, @Nullable UnitDeclaration declaration) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.contentHash = contentHash;
+      this.interfaceHash = interfaceHash;
+      this.declaration = declaration;
+    }
+
+    /**
+     * Copy of this entry which matches no file, so that the file is scanned again.
+     */
+    Entry outdated() {
+      return new Entry(size, -1L, contentHash, interfaceHash, declaration);
+    }
+  }
+
+}
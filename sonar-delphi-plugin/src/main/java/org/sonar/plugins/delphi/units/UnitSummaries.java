@@ -0,0 +1,202 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.CheckForNull;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Interface summaries of the units of the project, for rules which need the declarations of the units used by the
+ * analysed one without parsing them. Units of the standard library are looked up in the {@link SymbolSnapshot} of the
+ * configured compiler version, if any.
+ * <p>
+ * Summaries are stored on disk, one file per content hash, when the unit dependency index scans a unit. They are loaded
+ * on first use and the most recently used ones are kept in memory. Safe to use from several analysis threads.
+ */
+public final class UnitSummaries {
+
+  private static final Logger LOG = Loggers.get(UnitSummaries.class);
+
+  private static final int FORMAT_VERSION = 1;
+  private static final int MAX_LOADED_SUMMARIES = 500;
+
+  private static final UnitSummaries EMPTY = new UnitSummaries(Paths.get(""), Collections.emptyMap(), Collections.emptyMap());
+
+  private final Path directory;
+  private final SymbolSnapshot library;
+
+  /**
+   * Content hash of each unit, by lower case unit name.
+   */
+  private final Map<String, String> hashesByUnit;
+
+  /**
+   * Hash of the {@code uses} clauses and of the interface summary of each unit, by lower case unit name.
+   */
+  private final Map<String, String> interfaceHashesByUnit;
+  private final LoadingCache<String, Optional<UnitSummary>> summariesByHash;
+
+  UnitSummaries(Path directory, Map<String, String> hashesByUnit, Map<String, String> interfaceHashesByUnit) {
+    this(directory, hashesByUnit, interfaceHashesByUnit, SymbolSnapshot.empty());
+  }
+
+  private UnitSummaries(
+    Path directory, Map<String, String> hashesByUnit, Map<String, String> interfaceHashesByUnit, SymbolSnapshot library
+  ) {
+    this.directory = directory;
+    this.library = library;
+    this.hashesByUnit = new HashMap<>(hashesByUnit);
+    this.interfaceHashesByUnit = new HashMap<>(interfaceHashesByUnit);
+    this.summariesByHash = CacheBuilder.newBuilder()
+      .maximumSize(MAX_LOADED_SUMMARIES)
+      .build(CacheLoader.from(this::read));
+  }
+
+  public static UnitSummaries empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Returns these summaries, falling back to {@code library} for the units which are not part of the project.
+   */
+  public UnitSummaries withLibrary(SymbolSnapshot library) {
+    if (library.isEmpty() && this.library.isEmpty()) {
+      return this;
+    }
+    return new UnitSummaries(directory, hashesByUnit, interfaceHashesByUnit, library);
+  }
+
+  public SymbolSnapshot library() {
+    return library;
+  }
+
+  /**
+   * Summary of the unit of the project with this name, or else of the standard library unit with this name.
+   */
+  @CheckForNull
+  public UnitSummary summary(String unitName) {
+    String hash = hashesByUnit.get(unitName.toLowerCase(Locale.ENGLISH));
+    if (hash == null) {
+      return library.summary(unitName);
+    }
+    try {
+      return summariesByHash.get(hash).orElse(null);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      LOG.debug("Unable to load the interface summary of unit " + unitName, e);
+      return null;
+    }
+  }
+
+  /**
+   * Summaries of the units of the project and of the standard library listed in the {@code uses} clauses of
+   * {@code declaration}, in order.
+   */
+  public List<UnitSummary> usedBy(UnitDeclaration declaration) {
+    List<UnitSummary> summaries = new ArrayList<>();
+    for (String used : declaration.allUses()) {
+      UnitSummary summary = summary(used);
+      if (summary != null) {
+        summaries.add(summary);
+      }
+    }
+    return summaries;
+  }
+
+  /**
+   * Hash of the interfaces of the units of the project which the unit uses, directly or not: the issues raised on a
+   * unit can change with them even when its own contents do not. Empty when the unit uses none of them.
+   */
+  public String dependencyHash(UnitDependencyGraph graph, String unitName) {
+    Map<String, String> interfaceHashes = new TreeMap<>();
+    for (String used : graph.transitiveDependencies(unitName)) {
+      String unit = used.toLowerCase(Locale.ENGLISH);
+      interfaceHashes.put(unit, interfaceHashesByUnit.getOrDefault(unit, ""));
+    }
+    if (interfaceHashes.isEmpty()) {
+      return "";
+    }
+    Hasher hasher = Hashing.sha256().newHasher();
+    interfaceHashes.forEach((unit, hash) -> hasher
+      .putString(unit, StandardCharsets.UTF_8)
+      .putString(hash, StandardCharsets.UTF_8));
+    return hasher.hash().toString();
+  }
+
+  static Path file(Path directory, String hash) {
+    return directory.resolve(hash + ".bin");
+  }
+
+  static void write(Path directory, String hash, UnitSummary summary) throws IOException {
+    Path file = file(directory, hash);
+    if (Files.exists(file)) {
+      return;
+    }
+    Files.createDirectories(directory);
+    Path tempFile = directory.resolve(hash + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+      out.writeInt(FORMAT_VERSION);
+      summary.writeTo(out);
+    }
+    Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  private Optional<UnitSummary> read(String hash) {
+    Path file = file(directory, hash);
+    if (!Files.isRegularFile(file)) {
+      return Optional.empty();
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != FORMAT_VERSION) {
+        return Optional.empty();
+      }
+      return Optional.of(UnitSummary.readFrom(in));
+    } catch (IOException e) {
+      LOG.debug("Unable to read interface summary " + file, e);
+      return Optional.empty();
+    }
+  }
+
+}
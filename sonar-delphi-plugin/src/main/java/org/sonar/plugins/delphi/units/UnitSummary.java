@@ -0,0 +1,96 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Symbols exported by the interface section of a unit.
+ */
+public final class UnitSummary {
+
+  private final String unitName;
+  private final List<ExportedSymbol> symbols;
+
+  public UnitSummary(String unitName, List<ExportedSymbol> symbols) {
+    this.unitName = unitName;
+    this.symbols = Collections.unmodifiableList(new ArrayList<>(symbols));
+  }
+
+  public String unitName() {
+    return unitName;
+  }
+
+  public List<ExportedSymbol> symbols() {
+    return symbols;
+  }
+
+  /**
+   * Unit level symbols and members with this name, compared case-insensitively.
+   */
+  public List<ExportedSymbol> symbols(String name) {
+    String lowerCaseName = name.toLowerCase(Locale.ENGLISH);
+    List<ExportedSymbol> result = new ArrayList<>();
+    for (ExportedSymbol symbol : symbols) {
+      if (symbol.name().toLowerCase(Locale.ENGLISH).equals(lowerCaseName)) {
+        result.add(symbol);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Members declared by the type with this name.
+   */
+  public List<ExportedSymbol> members(String typeName) {
+    List<ExportedSymbol> result = new ArrayList<>();
+    for (ExportedSymbol symbol : symbols) {
+      if (typeName.equalsIgnoreCase(symbol.container())) {
+        result.add(symbol);
+      }
+    }
+    return result;
+  }
+
+  void writeTo(DataOutput out) throws IOException {
+    out.writeUTF(unitName);
+    out.writeInt(symbols.size());
+    for (ExportedSymbol symbol : symbols) {
+      symbol.writeTo(out);
+    }
+  }
+
+  static UnitSummary readFrom(DataInput in) throws IOException {
+    String unitName = in.readUTF();
+    int count = in.readInt();
+    List<ExportedSymbol> symbols = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      symbols.add(ExportedSymbol.readFrom(in));
+    }
+    return new UnitSummary(unitName, symbols);
+  }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.config.Configuration;
+import org.sonar.delphi.visitors.DelphiVisitorContext;
+import org.sonar.plugins.delphi.api.tree.ScriptTree;
+import org.sonar.plugins.delphi.api.visitors.TreeVisitorContext;
+
+/**
+ * Visitor context which carries the {@link UnitDependencyGraph} and {@link UnitSummaries} of the project.
+ */
+public class UnitsVisitorContext extends DelphiVisitorContext {
+
+  private final UnitDependencyGraph unitDependencies;
+  private final UnitSummaries unitSummaries;
+
+  public UnitsVisitorContext(
+    ScriptTree tree, InputFile inputFile, Configuration configuration, UnitDependencyGraph unitDependencies, UnitSummaries unitSummaries
+  ) {
+    super(tree, inputFile, configuration);
+    this.unitDependencies = unitDependencies;
+    this.unitSummaries = unitSummaries;
+  }
+
+  public UnitDependencyGraph unitDependencies() {
+    return unitDependencies;
+  }
+
+  public UnitSummaries unitSummaries() {
+    return unitSummaries;
+  }
+
+  /**
+   * Unit dependency graph of the project, empty if the context does not carry one, like in SonarLint.
+   */
+  public static UnitDependencyGraph unitDependencies(TreeVisitorContext context) {
+    if (context instanceof UnitsVisitorContext) {
+      return ((UnitsVisitorContext) context).unitDependencies();
+    }
+    return UnitDependencyGraph.empty();
+  }
+
+  /**
+   * Interface summaries of the units of the project, empty if the context does not carry them, like in SonarLint.
+   */
+  public static UnitSummaries unitSummaries(TreeVisitorContext context) {
+    if (context instanceof UnitsVisitorContext) {
+      return ((UnitsVisitorContext) context).unitSummaries();
+    }
+    return UnitSummaries.empty();
+  }
+
+}
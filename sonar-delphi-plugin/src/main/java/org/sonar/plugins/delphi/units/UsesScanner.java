@@ -0,0 +1,137 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+
+/**
+ * Extracts the unit name and the {@code uses} clauses of a Delphi source file without parsing it. Only identifiers,
+ * strings, comments and compiler directives are told apart, and scanning stops as soon as no more {@code uses} clause
+ * can follow: after the implementation {@code uses} clause of a unit, or at the first declaration of a program,
+ * library or package.
+ * <p>
+ * Conditional compilation directives are ignored, so units used under any condition are all reported.
+ */
+public final class UsesScanner {
+
+  private static final Set<String> HEADERS = ImmutableSet.of("unit", "program", "library", "package");
+
+  /**
+   * Keywords which end the clauses section of programs, libraries and packages.
+   */
+  private static final Set<String> DECLARATIONS = ImmutableSet.of(
+    "begin", "const", "var", "type", "procedure", "function", "label", "resourcestring", "threadvar", "exports",
+    "initialization", "end");
+
+  private final Lexer lexer;
+
+  private UsesScanner(String source) {
+    this.lexer = new Lexer(source);
+  }
+
+  /**
+   * @return the declaration of the file, {@code null} if it has no unit, program, library nor package header
+   */
+  @CheckForNull
+  public static UnitDeclaration scan(String source) {
+    return new UsesScanner(source).scan();
+  }
+
+  @CheckForNull
+  private UnitDeclaration scan() {
+    String header = nextWord();
+    if (header == null || !HEADERS.contains(header)) {
+      return null;
+    }
+    boolean isUnit = "unit".equals(header);
+    boolean isPackage = "package".equals(header);
+    lexer.next();
+    String name = lexer.dottedName();
+    if (name == null) {
+      return null;
+    }
+
+    List<String> interfaceUses = new ArrayList<>();
+    List<String> implementationUses = new ArrayList<>();
+    boolean inImplementation = false;
+    String keyword;
+    while ((keyword = nextWord()) != null) {
+      if ("uses".equals(keyword) || (isPackage && "contains".equals(keyword))) {
+        readClause(lexer, inImplementation ? implementationUses : interfaceUses);
+        if (inImplementation) {
+          break;
+        }
+      } else if (isPackage && "requires".equals(keyword)) {
+        // packages required by a package are not units
+        readClause(lexer, new ArrayList<>());
+      } else if (isUnit && "implementation".equals(keyword)) {
+        inImplementation = true;
+      } else if (inImplementation || (!isUnit && DECLARATIONS.contains(keyword))) {
+        break;
+      }
+    }
+    return new UnitDeclaration(name, interfaceUses, implementationUses);
+  }
+
+  /**
+   * Reads {@code A, B.C in 'B.C.pas', D;} into {@code names}. Stops at the first unexpected token.
+   */
+  static void readClause(Lexer lexer, List<String> names) {
+    while (true) {
+      lexer.next();
+      String name = lexer.dottedName();
+      if (name == null) {
+        lexer.pushBack();
+        return;
+      }
+      names.add(name);
+      lexer.next();
+      if (lexer.isWord("in")) {
+        lexer.next();
+        lexer.next();
+      }
+      if (!lexer.isSymbol(',')) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Next identifier or keyword in lower case, skipping any other token.
+   */
+  @CheckForNull
+  private String nextWord() {
+    while (true) {
+      Lexer.Kind kind = lexer.next();
+      if (kind == Lexer.Kind.END) {
+        return null;
+      }
+      if (kind == Lexer.Kind.WORD) {
+        return lexer.text().toLowerCase(Locale.ENGLISH);
+      }
+    }
+  }
+
+}
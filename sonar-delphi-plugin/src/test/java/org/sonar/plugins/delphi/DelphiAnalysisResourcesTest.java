@@ -0,0 +1,66 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Test;
+import org.sonar.api.batch.rule.CheckFactory;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DelphiAnalysisResourcesTest {
+
+  private final AtomicInteger createdChecks = new AtomicInteger();
+
+  private final Supplier<DelphiChecks> factory = () -> {
+    createdChecks.incrementAndGet();
+    return DelphiChecks.createDelphiCheck(new CheckFactory(new ActiveRulesBuilder().build()));
+  };
+
+  @Test
+  public void should_create_the_checks_for_the_first_module_only() {
+    DelphiAnalysisResources resources = new DelphiAnalysisResources();
+
+    DelphiChecks firstModule = resources.checks(factory);
+    DelphiChecks secondModule = resources.checks(factory);
+
+    assertThat(secondModule).isSameAs(firstModule);
+    assertThat(createdChecks.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_create_the_parser_for_the_first_module_only() {
+    DelphiAnalysisResources resources = new DelphiAnalysisResources();
+
+    assertThat(resources.parser()).isSameAs(resources.parser());
+  }
+
+  @Test
+  public void should_not_share_between_scans() {
+    DelphiChecks firstScan = new DelphiAnalysisResources().checks(factory);
+    DelphiChecks secondScan = new DelphiAnalysisResources().checks(factory);
+
+    assertThat(secondScan).isNotSameAs(firstScan);
+    assertThat(createdChecks.get()).isEqualTo(2);
+  }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.sonar.api.batch.rule.CheckFactory;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.AnnotationUtils;
+import org.sonar.check.Rule;
+import org.sonar.delphi.checks.CheckList;
+import org.sonar.plugins.delphi.api.CustomRuleRepository;
+import org.sonar.plugins.delphi.api.DelphiCheck;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DelphiChecksTest {
+
+  private static final String CUSTOM_REPOSITORY_KEY = "custom";
+
+  @Test
+  public void should_map_each_check_to_the_rule_key_of_its_repository() {
+    List<Class> checkClasses = CheckList.getChecks();
+    ActiveRulesBuilder activeRules = new ActiveRulesBuilder();
+    for (Class checkClass : checkClasses) {
+      activeRules.create(RuleKey.of(CheckList.REPOSITORY_KEY, ruleKey(checkClass))).activate();
+    }
+
+    DelphiChecks checks = DelphiChecks.createDelphiCheck(new CheckFactory(activeRules.build()))
+      .addChecks(CheckList.REPOSITORY_KEY, checkClasses);
+
+    List<DelphiCheck> instances = instances(checks);
+    assertThat(instances).hasSize(checkClasses.size());
+    for (DelphiCheck check : instances) {
+      assertThat(checks.ruleKey(check)).isEqualTo(RuleKey.of(CheckList.REPOSITORY_KEY, ruleKey(check.getClass())));
+    }
+    assertThat(checks.checkClasses()).hasSize(checkClasses.size());
+    assertThat(checks.checkClasses().containsAll(checkClasses)).isTrue();
+  }
+
+  @Test
+  public void should_tell_apart_instances_of_the_same_class_in_several_repositories() {
+    Class checkClass = CheckList.getChecks().get(0);
+    RuleKey delphiRuleKey = RuleKey.of(CheckList.REPOSITORY_KEY, ruleKey(checkClass));
+    RuleKey customRuleKey = RuleKey.of(CUSTOM_REPOSITORY_KEY, ruleKey(checkClass));
+    CheckFactory checkFactory = new CheckFactory(new ActiveRulesBuilder()
+      .create(delphiRuleKey).activate()
+      .create(customRuleKey).activate()
+      .build());
+    CustomRuleRepository customRepository = mock(CustomRuleRepository.class);
+    when(customRepository.repositoryKey()).thenReturn(CUSTOM_REPOSITORY_KEY);
+    when(customRepository.checkClasses()).thenReturn(ImmutableList.of(checkClass));
+
+    DelphiChecks checks = DelphiChecks.createDelphiCheck(checkFactory)
+      .addChecks(CheckList.REPOSITORY_KEY, ImmutableList.of(checkClass))
+      .addCustomChecks(null, new CustomRuleRepository[] {customRepository});
+
+    List<DelphiCheck> instances = instances(checks);
+    assertThat(instances).hasSize(2);
+    assertThat(instances).extracting(checks::ruleKey).containsOnly(delphiRuleKey, customRuleKey);
+    assertThat(checks.checkClasses()).containsOnly(checkClass);
+  }
+
+  @Test
+  public void should_not_add_inactive_checks() {
+    DelphiChecks checks = DelphiChecks.createDelphiCheck(new CheckFactory(new ActiveRulesBuilder().build()))
+      .addChecks(CheckList.REPOSITORY_KEY, CheckList.getChecks());
+
+    assertThat(instances(checks)).isEmpty();
+    assertThat(checks.checkClasses()).isEmpty();
+  }
+
+  @Test
+  public void should_not_map_checks_of_another_instance() throws ReflectiveOperationException {
+    Class checkClass = CheckList.getChecks().get(0);
+    DelphiChecks checks = DelphiChecks.createDelphiCheck(new CheckFactory(new ActiveRulesBuilder()
+      .create(RuleKey.of(CheckList.REPOSITORY_KEY, ruleKey(checkClass))).activate()
+      .build()))
+      .addChecks(CheckList.REPOSITORY_KEY, ImmutableList.of(checkClass));
+    DelphiCheck otherInstance = (DelphiCheck) checkClass.newInstance();
+
+    assertThat(checks.ruleKeyFor(otherInstance)).isNull();
+    try {
+      checks.ruleKey(otherInstance);
+      fail("Expected an IllegalStateException");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("No rule key found for a rule");
+    }
+  }
+
+  private static List<DelphiCheck> instances(DelphiChecks checks) {
+    List<DelphiCheck> instances = new ArrayList<>(checks.seChecks());
+    checks.visitorChecks().stream()
+      .map(DelphiCheck.class::cast)
+      .filter(check -> !instances.contains(check))
+      .forEach(instances::add);
+    return instances;
+  }
+
+  private static String ruleKey(Class<?> checkClass) {
+    return AnnotationUtils.getAnnotation(checkClass, Rule.class).key();
+  }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.Predicate;
+import org.junit.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.utils.WildcardPattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DelphiExclusionsFileFilterTest {
+
+  private static final String[] PATHS = {
+    "generated/Unit1.pas",
+    "src/generated/Unit1.pas",
+    "src/generated/sub/Unit1.pas",
+    "src/generated2/Unit1.pas",
+    "src/notgenerated/Unit1.pas",
+    "src/Generated/Unit1.pas",
+    "srcgenerated/Unit1.pas",
+    "file:/C:/work/src/generated/Unit1.pas",
+    "file:/home/ci/work/src/Unit1.pas",
+    "src\\generated\\Unit1.pas",
+    "Unit1.inc",
+    "src/Unit1.inc",
+    "src/Unit1.inc.pas",
+    "src/Unit1.pinc",
+    "src/Unit1.INC",
+    "src/.inc",
+    "src/a.inc/Unit1.pas",
+    "src/Unit1.pas.bak"
+  };
+
+  @Test
+  public void should_match_directory_patterns_like_the_wildcard_pattern() {
+    assertMatchesLikeWildcardPattern("**/generated/**");
+  }
+
+  @Test
+  public void should_match_suffix_patterns_like_the_wildcard_pattern() {
+    assertMatchesLikeWildcardPattern("**/*.inc");
+    assertMatchesLikeWildcardPattern("**/*.bak");
+  }
+
+  @Test
+  public void should_match_other_patterns_with_the_wildcard_pattern() {
+    assertMatchesLikeWildcardPattern("src/**/Unit?.pas");
+    assertMatchesLikeWildcardPattern("**/*.~*");
+    assertMatchesLikeWildcardPattern("**/gen*/**");
+  }
+
+  @Test
+  public void should_match_any_of_the_patterns() {
+    Predicate<String> excluded = DelphiExclusionsFileFilter.compile(new String[] {" **/generated/** ", "", "**/*.inc", "**/*.bak*"});
+
+    assertThat(excluded.test("src/generated/Unit1.pas")).isTrue();
+    assertThat(excluded.test("src/Unit1.inc")).isTrue();
+    assertThat(excluded.test("src/Unit1.pas.bak2")).isTrue();
+    assertThat(excluded.test("src/Unit1.pas")).isFalse();
+  }
+
+  @Test
+  public void should_not_exclude_anything_without_patterns() {
+    assertThat(DelphiExclusionsFileFilter.compile(new String[0]).test("src/Unit1.pas")).isFalse();
+  }
+
+  @Test
+  public void should_exclude_files_on_their_relative_path_or_their_uri() {
+    Path baseDir = Paths.get("/work/project").toAbsolutePath();
+    InputFile generated = inputFile(baseDir, "src/generated/Unit1.pas", DelphiLanguage.KEY);
+    InputFile other = inputFile(baseDir, "src/Unit2.pas", DelphiLanguage.KEY);
+
+    assertThat(filter("src/generated/**").accept(generated)).isFalse();
+    assertThat(filter("src/generated/**").accept(other)).isTrue();
+    assertThat(filter("file:**/project/src/generated/**").accept(generated)).isFalse();
+    assertThat(filter("file:**/project/src/generated/**").accept(other)).isTrue();
+  }
+
+  @Test
+  public void should_not_exclude_files_of_other_languages() {
+    InputFile inputFile = inputFile(Paths.get("/work/project").toAbsolutePath(), "src/generated/Unit1.java", "java");
+
+    assertThat(filter("**/generated/**").accept(inputFile)).isTrue();
+  }
+
+  private static void assertMatchesLikeWildcardPattern(String pattern) {
+    Predicate<String> excluded = DelphiExclusionsFileFilter.compile(new String[] {pattern});
+    WildcardPattern wildcardPattern = WildcardPattern.create(pattern);
+    for (String path : PATHS) {
+      assertThat(excluded.test(path))
+        .as("%s on %s", pattern, path)
+        .isEqualTo(wildcardPattern.match(path.replace('\\', '/')));
+    }
+  }
+
+  private static DelphiExclusionsFileFilter filter(String pattern) {
+    return new DelphiExclusionsFileFilter(new MapSettings()
+      .setProperty(DelphiPlugin.DELPHI_EXCLUSIONS_KEY, pattern)
+      .asConfig());
+  }
+
+  private static InputFile inputFile(Path baseDir, String relativePath, String language) {
+    return new TestInputFileBuilder("module", relativePath)
+      .setModuleBaseDir(baseDir)
+      .setLanguage(language)
+      .build();
+  }
+
+}
@@ -0,0 +1,220 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.api.batch.rule.CheckFactory;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.issue.NoSonarFilter;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.AnnotationUtils;
+import org.sonar.delphi.checks.CheckList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Analyses a generated project in low memory mode in a JVM whose heap is too small to hold the trees of all its files,
+ * and fails if that JVM runs out of memory.
+ */
+public class LowMemoryAnalysisTest {
+
+  private static final String MAX_HEAP = "-Xmx96m";
+  private static final int FILES = 400;
+  private static final int ROUTINES_PER_FILE = 30;
+  private static final long TIMEOUT_MINUTES = 5;
+
+  /**
+   * Saving highlighting, symbols, CPD tokens and issues is not needed: the storage of {@link SensorContextTester} keeps
+   * them for the whole run, and would fill the heap on its own.
+   */
+  private static final Set<String> DISCARDED = new HashSet<>(Arrays.asList(
+    "newHighlighting", "newSymbolTable", "newCpdTokens", "newIssue"));
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void should_analyse_a_project_within_a_bounded_heap() throws Exception {
+    Path baseDir = temp.newFolder("project").toPath();
+    Path log = temp.newFile("analysis.log").toPath();
+    Process process = new ProcessBuilder(
+      Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+      MAX_HEAP,
+      "-XX:+ExitOnOutOfMemoryError",
+      "-cp", System.getProperty("java.class.path"),
+      LowMemoryAnalysisTest.class.getName(),
+      baseDir.toString())
+      .redirectErrorStream(true)
+      .redirectOutput(log.toFile())
+      .start();
+
+    boolean exited = process.waitFor(TIMEOUT_MINUTES, TimeUnit.MINUTES);
+    if (!exited) {
+      process.destroyForcibly();
+    }
+
+    String output = new String(Files.readAllBytes(log), StandardCharsets.UTF_8);
+    assertThat(exited).as("analysis did not end within %d minutes:%n%s", TIMEOUT_MINUTES, output).isTrue();
+    assertThat(process.exitValue()).as("analysis failed:%n%s", output).isZero();
+  }
+
+  /**
+   * Entry point of the forked JVM.
+   */
+  public static void main(String[] args) throws IOException {
+    Path baseDir = Paths.get(args[0]);
+    SensorContextTester context = SensorContextTester.create(baseDir);
+    Path sourceDir = Files.createDirectories(baseDir.resolve("src"));
+    for (int i = 0; i < FILES; i++) {
+      String unitName = "Unit" + i;
+      String source = unit(unitName);
+      Files.write(sourceDir.resolve(unitName + ".pas"), source.getBytes(StandardCharsets.UTF_8));
+      // contents are read from disk, like in a real scan
+      context.fileSystem().add(new TestInputFileBuilder("module", "src/" + unitName + ".pas")
+        .setModuleBaseDir(baseDir)
+        .setLanguage(DelphiLanguage.KEY)
+        .setType(InputFile.Type.MAIN)
+        .setCharset(StandardCharsets.UTF_8)
+        .initMetadata(source)
+        .build());
+    }
+
+    MapSettings settings = new MapSettings();
+    settings.setProperty(DelphiPlugin.ANALYSIS_LOW_MEMORY, true);
+    context.setSettings(settings);
+    ActiveRules activeRules = allRules();
+    context.setActiveRules(activeRules);
+
+    FileLinesContextFactory fileLinesContextFactory = (FileLinesContextFactory) noOp(FileLinesContextFactory.class);
+    new DelphiSensor(new CheckFactory(activeRules), fileLinesContextFactory, context.fileSystem(), new NoSonarFilter())
+      .execute(discarding(context));
+
+    if (context.allAnalysisErrors().size() > 0) {
+      throw new IllegalStateException(context.allAnalysisErrors().size() + " file(s) could not be analysed");
+    }
+  }
+
+  private static ActiveRules allRules() {
+    ActiveRulesBuilder builder = new ActiveRulesBuilder();
+    for (Class<?> checkClass : CheckList.getChecks()) {
+      org.sonar.check.Rule rule = AnnotationUtils.getAnnotation(checkClass, org.sonar.check.Rule.class);
+      builder.create(RuleKey.of(CheckList.REPOSITORY_KEY, rule.key())).activate();
+    }
+    return builder.build();
+  }
+
+  private static String unit(String unitName) {
+    StringBuilder source = new StringBuilder()
+      .append("unit ").append(unitName).append(";\n\n")
+      .append("interface\n\n")
+      .append("uses\n  SysUtils, Classes;\n\n")
+      .append("type\n  T").append(unitName).append(" = class\n  public\n");
+    for (int i = 0; i < ROUTINES_PER_FILE; i++) {
+      source.append("    function Compute").append(i).append("(A, B: Integer): Integer;\n");
+    }
+    source.append("  end;\n\nimplementation\n\n");
+    for (int i = 0; i < ROUTINES_PER_FILE; i++) {
+      source.append("function T").append(unitName).append(".Compute").append(i).append("(A, B: Integer): Integer;\n")
+        .append("var\n  I: Integer;\n  S: string;\n")
+        .append("begin\n")
+        .append("  Result := 0;\n")
+        .append("  S := IntToStr(A) + ' ' + IntToStr(B);\n")
+        .append("  for I := A to B do\n")
+        .append("  begin\n")
+        .append("    if I mod 2 = 0 then\n")
+        .append("      Result := Result + I\n")
+        .append("    else\n")
+        .append("      Result := Result - Length(S);\n")
+        .append("  end;\n")
+        .append("  case Result of\n")
+        .append("    0: Result := ").append(i).append(";\n")
+        .append("  end;\n")
+        .append("end;\n\n");
+    }
+    return source.append("end.\n").toString();
+  }
+
+  private static SensorContext discarding(SensorContext delegate) {
+    return (SensorContext) Proxy.newProxyInstance(SensorContext.class.getClassLoader(), new Class<?>[] {SensorContext.class},
+      (proxy, method, args) -> {
+        if (DISCARDED.contains(method.getName())) {
+          return noOp(method.getReturnType());
+        }
+        try {
+          return method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+          throw e.getCause();
+        }
+      });
+  }
+
+  /**
+   * Implementation of an interface, like {@code NewHighlighting}, which accepts and saves nothing and does not record
+   * its calls either.
+   */
+  private static Object noOp(Class<?> type) {
+    return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (proxy, method, args) -> {
+      Class<?> returnType = method.getReturnType();
+      if (returnType.isInstance(proxy)) {
+        return proxy;
+      }
+      if (returnType.isInterface()) {
+        return noOp(returnType);
+      }
+      return defaultValue(method);
+    });
+  }
+
+  private static Object defaultValue(Method method) {
+    Class<?> returnType = method.getReturnType();
+    if (returnType == boolean.class) {
+      return false;
+    }
+    if (returnType == int.class) {
+      return 0;
+    }
+    if (returnType == long.class) {
+      return 0L;
+    }
+    return null;
+  }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi;
+
+import com.sonar.sslr.api.typed.ActionParser;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.delphi.checks.CheckList;
+import org.sonar.delphi.parser.DelphiParserBuilder;
+import org.sonar.delphi.visitors.DelphiVisitorContext;
+import org.sonar.plugins.delphi.api.tree.ScriptTree;
+import org.sonar.plugins.delphi.api.visitors.Issue;
+import org.sonar.plugins.delphi.api.visitors.SubscriptionVisitorCheck;
+import org.sonar.plugins.delphi.api.visitors.TreeVisitor;
+import org.sonar.plugins.delphi.monitoring.AnalysisMonitor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SubscriptionDispatcherTest {
+
+  private static final String UNIT = "unit Sample;\n"
+    + "\n"
+    + "interface\n"
+    + "\n"
+    + "uses\n"
+    + "  SysUtils, Classes;\n"
+    + "\n"
+    + "type\n"
+    + "  TCounter = class\n"
+    + "  private\n"
+    + "    FValue: Integer;\n"
+    + "  public\n"
+    + "    procedure Increment;\n"
+    + "    function Sum(A, B: Integer): Integer;\n"
+    + "  end;\n"
+    + "\n"
+    + "implementation\n"
+    + "\n"
+    + "procedure TCounter.Increment;\n"
+    + "begin\n"
+    + "  if FValue = 0 then\n"
+    + "  begin\n"
+    + "  end;\n"
+    + "  FValue := FValue + 1; // NOSONAR\n"
+    + "end;\n"
+    + "\n"
+    + "function TCounter.Sum(A, B: Integer): Integer;\n"
+    + "var\n"
+    + "  I: Integer;\n"
+    + "begin\n"
+    + "  Result := 0;\n"
+    + "  for I := A to B do\n"
+    + "    Result := Result + I;\n"
+    + "  while Result > 100 do\n"
+    + "    Result := Result div 2;\n"
+    + "  case Result of\n"
+    + "    0: Exit;\n"
+    + "  end;\n"
+    + "  try\n"
+    + "    Result := Result * 2;\n"
+    + "  except\n"
+    + "  end;\n"
+    + "end;\n"
+    + "\n"
+    + "end.\n";
+
+  private static final String PROGRAM = "program Sample;\n"
+    + "\n"
+    + "uses\n"
+    + "  SysUtils;\n"
+    + "\n"
+    + "var\n"
+    + "  S: string;\n"
+    + "  X: Integer;\n"
+    + "\n"
+    + "begin\n"
+    + "  S := 'a' + 'b';\n"
+    + "  X := 1;\n"
+    + "  if X = 1 then\n"
+    + "    if X = 1 then\n"
+    + "      WriteLn(S)\n"
+    + "    else\n"
+    + "      ;\n"
+    + "  with TStringList.Create do\n"
+    + "    Free;\n"
+    + "end.\n";
+
+  private ActionParser<?> parser;
+
+  @Before
+  public void setUp() {
+    parser = DelphiParserBuilder.createParser();
+  }
+
+  @Test
+  public void should_raise_the_issues_of_one_walk_per_check() throws Exception {
+    for (String source : new String[] {UNIT, PROGRAM}) {
+      assertThat(dispatcherIssues(source, AnalysisMonitor.disabled())).containsExactlyElementsOf(perCheckIssues(source));
+    }
+  }
+
+  @Test
+  public void should_raise_the_same_issues_when_monitored() throws Exception {
+    for (String source : new String[] {UNIT, PROGRAM}) {
+      assertThat(dispatcherIssues(source, AnalysisMonitor.enabled())).containsExactlyElementsOf(perCheckIssues(source));
+    }
+  }
+
+  @Test
+  public void should_not_keep_issues_of_the_previous_file() throws Exception {
+    List<TreeVisitor> checks = subscriptionChecks();
+    SubscriptionDispatcher dispatcher = new SubscriptionDispatcher(checks, visitor -> visitor.getClass().getSimpleName());
+
+    dispatcher.scanFile(context(UNIT), AnalysisMonitor.disabled(), () -> { });
+    List<Issue> issues = dispatcher.scanFile(context(PROGRAM), AnalysisMonitor.disabled(), () -> { });
+
+    assertThat(serialize(issues)).containsExactlyElementsOf(perCheckIssues(PROGRAM));
+  }
+
+  @Test
+  public void should_run_the_budget_check_during_the_walk() throws Exception {
+    StringBuilder source = new StringBuilder("program Large;\nvar X: Integer;\nbegin\n");
+    for (int i = 0; i < 500; i++) {
+      source.append("  X := X + ").append(i).append(";\n");
+    }
+    source.append("end.\n");
+    SubscriptionDispatcher dispatcher = new SubscriptionDispatcher(subscriptionChecks(), visitor -> visitor.getClass().getSimpleName());
+    int[] budgetChecks = {0};
+
+    dispatcher.scanFile(context(source.toString()), AnalysisMonitor.disabled(), () -> budgetChecks[0]++);
+
+    assertThat(budgetChecks[0]).isPositive();
+  }
+
+  private List<String> perCheckIssues(String source) throws Exception {
+    DelphiVisitorContext context = context(source);
+    List<Issue> issues = new ArrayList<>();
+    for (TreeVisitor check : subscriptionChecks()) {
+      issues.addAll(((SubscriptionVisitorCheck) check).scanFile(context));
+    }
+    return serialize(issues);
+  }
+
+  private List<String> dispatcherIssues(String source, AnalysisMonitor monitor) throws Exception {
+    SubscriptionDispatcher dispatcher = new SubscriptionDispatcher(subscriptionChecks(), visitor -> visitor.getClass().getSimpleName());
+    assertThat(dispatcher.isEmpty()).isFalse();
+    assertThat(dispatcher.otherVisitors()).isEmpty();
+    return serialize(dispatcher.scanFile(context(source), monitor, () -> { }));
+  }
+
+  private static List<TreeVisitor> subscriptionChecks() throws ReflectiveOperationException {
+    List<TreeVisitor> checks = new ArrayList<>();
+    for (Class<?> checkClass : CheckList.getChecks()) {
+      if (SubscriptionVisitorCheck.class.isAssignableFrom(checkClass)) {
+        checks.add((TreeVisitor) checkClass.newInstance());
+      }
+    }
+    return checks;
+  }
+
+  private DelphiVisitorContext context(String source) {
+    InputFile inputFile = new TestInputFileBuilder("module", "Sample.pas")
+      .setCharset(StandardCharsets.UTF_8)
+      .setContents(source)
+      .build();
+    return new DelphiVisitorContext((ScriptTree) parser.parse(source), inputFile, new MapSettings().asConfig());
+  }
+
+  /**
+   * Issues as written in the analysis cache, which keeps their check, locations, messages and cost.
+   */
+  private static List<String> serialize(List<Issue> issues) throws IOException {
+    List<String> serialized = new ArrayList<>();
+    for (Issue issue : issues) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(bytes)) {
+        IssueRecord.create(RuleKey.of(CheckList.REPOSITORY_KEY, issue.check().getClass().getSimpleName()), issue).writeTo(out);
+      }
+      serialized.add(Base64.getEncoder().encodeToString(bytes.toByteArray()));
+    }
+    return serialized;
+  }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class SymbolicExecutionBudgetTest {
+
+  @Test
+  public void should_stop_a_routine_exploring_too_many_states() {
+    SymbolicExecutionBudget budget = new SymbolicExecutionBudget(10);
+    budget.startFile(() -> { });
+    budget.startOfExecution(null);
+    explore(budget, 10);
+
+    try {
+      explore(budget, 1);
+      fail("The budget should have been exceeded");
+    } catch (SymbolicExecutionBudget.BudgetExceededException e) {
+      assertThat(e).hasMessage("Symbolic execution of a routine explored more than 10 program states");
+    }
+  }
+
+  @Test
+  public void should_count_states_per_routine() {
+    SymbolicExecutionBudget budget = new SymbolicExecutionBudget(10);
+    budget.startFile(() -> { });
+    for (int routine = 0; routine < 5; routine++) {
+      budget.startOfExecution(null);
+      explore(budget, 10);
+    }
+  }
+
+  @Test
+  public void should_not_limit_states_with_zero() {
+    SymbolicExecutionBudget budget = new SymbolicExecutionBudget(0);
+    budget.startFile(() -> { });
+    budget.startOfExecution(null);
+    explore(budget, 100_000);
+  }
+
+  @Test
+  public void should_check_the_time_budget_of_the_file_periodically() {
+    AtomicInteger timeChecks = new AtomicInteger();
+    SymbolicExecutionBudget budget = new SymbolicExecutionBudget(0);
+    budget.startFile(timeChecks::incrementAndGet);
+    for (int routine = 0; routine < 4; routine++) {
+      budget.startOfExecution(null);
+      explore(budget, 1024);
+    }
+    budget.endFile();
+    explore(budget, 1024);
+
+    assertThat(timeChecks.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void should_propagate_the_timeout_of_the_file() {
+    SymbolicExecutionBudget budget = new SymbolicExecutionBudget(0);
+    budget.startFile(() -> {
+      throw new IllegalStateException("timeout");
+    });
+    budget.startOfExecution(null);
+
+    try {
+      explore(budget, 1024);
+      fail("The time check should have thrown");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("timeout");
+    }
+  }
+
+  private static void explore(SymbolicExecutionBudget budget, int states) {
+    for (int i = 0; i < states; i++) {
+      budget.beforeBlockElement(null, null, null);
+    }
+  }
+
+}
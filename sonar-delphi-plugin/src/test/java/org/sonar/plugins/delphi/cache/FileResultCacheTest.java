@@ -0,0 +1,100 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.cache;
+
+import com.google.common.collect.ImmutableSet;
+import java.io.File;
+import java.util.Collections;
+import org.junit.Test;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.plugins.delphi.DelphiPlugin;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileResultCacheTest {
+
+  private static final String URI = "file:///project/src/Unit1.pas";
+
+  private final FileResultCache cache = new FileResultCache(10);
+
+  @Test
+  public void should_return_the_results_of_the_same_contents_and_settings() {
+    cache.put(URI, "settings", "hash", Collections.emptyList(), ImmutableSet.of(4));
+
+    FileResultCache.Entry entry = cache.get(URI, "settings", "hash");
+
+    assertThat(entry).isNotNull();
+    assertThat(entry.issues()).isEmpty();
+    assertThat(entry.noSonarLines()).containsOnly(4);
+  }
+
+  @Test
+  public void should_miss_when_the_contents_changed() {
+    cache.put(URI, "settings", "hash", Collections.emptyList(), ImmutableSet.of(4));
+
+    assertThat(cache.get(URI, "settings", "other hash")).isNull();
+    assertThat(cache.get("file:///project/src/Unit2.pas", "settings", "hash")).isNull();
+  }
+
+  @Test
+  public void should_keep_one_entry_per_file() {
+    cache.put(URI, "settings", "hash", Collections.emptyList(), ImmutableSet.of(4));
+    cache.put(URI, "settings", "new hash", Collections.emptyList(), ImmutableSet.of(5));
+
+    assertThat(cache.get(URI, "settings", "hash")).isNull();
+    assertThat(cache.get(URI, "settings", "new hash").noSonarLines()).containsOnly(5);
+  }
+
+  @Test
+  public void should_drop_the_entries_of_other_settings_when_an_analysis_starts() {
+    cache.put(URI, "settings", "hash", Collections.emptyList(), ImmutableSet.of(4));
+    cache.put("file:///project/src/Unit2.pas", "new settings", "hash", Collections.emptyList(), ImmutableSet.of(5));
+
+    assertThat(cache.get(URI, "new settings", "hash")).isNull();
+
+    cache.startAnalysis("new settings");
+
+    assertThat(cache.get(URI, "settings", "hash")).isNull();
+    assertThat(cache.get("file:///project/src/Unit2.pas", "new settings", "hash")).isNotNull();
+  }
+
+  @Test
+  public void should_evict_beyond_the_maximum_number_of_files() {
+    FileResultCache small = new FileResultCache(1);
+    small.put(URI, "settings", "hash", Collections.emptyList(), Collections.emptySet());
+    small.put("file:///project/src/Unit2.pas", "settings", "hash", Collections.emptyList(), Collections.emptySet());
+
+    assertThat(small.get(URI, "settings", "hash")).isNull();
+    assertThat(small.get("file:///project/src/Unit2.pas", "settings", "hash")).isNotNull();
+  }
+
+  @Test
+  public void should_change_the_fingerprint_with_the_settings_of_nosonar_lines() {
+    SensorContextTester context = SensorContextTester.create(new File("."));
+    String fingerprint = FileResultCache.fingerprint(context, Collections.emptyList());
+
+    assertThat(FileResultCache.fingerprint(context, Collections.emptyList())).isEqualTo(fingerprint);
+
+    context.setSettings(new MapSettings().setProperty(DelphiPlugin.IGNORE_HEADER_COMMENTS, "false"));
+    assertThat(FileResultCache.fingerprint(context, Collections.emptyList())).isNotEqualTo(fingerprint);
+  }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.cache;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.issue.NoSonarFilter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class RecordingNoSonarFilterTest {
+
+  private final NoSonarFilter delegate = mock(NoSonarFilter.class);
+  private final RecordingNoSonarFilter filter = new RecordingNoSonarFilter(delegate);
+  private final InputFile inputFile = new TestInputFileBuilder("module", "src/Unit1.pas").build();
+
+  @Test
+  public void should_pass_lines_on_and_keep_a_copy_until_taken() {
+    Set<Integer> lines = new HashSet<>(ImmutableSet.of(3, 7));
+
+    filter.noSonarInFile(inputFile, lines);
+    lines.clear();
+
+    verify(delegate).noSonarInFile(inputFile, lines);
+    assertThat(filter.take(inputFile)).containsOnly(3, 7);
+    assertThat(filter.take(inputFile)).isEmpty();
+  }
+
+  @Test
+  public void should_have_no_lines_for_files_not_reported() {
+    assertThat(filter.take(inputFile)).isEmpty();
+  }
+
+}
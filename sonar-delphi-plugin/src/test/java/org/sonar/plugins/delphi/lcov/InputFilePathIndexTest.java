@@ -0,0 +1,147 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.lcov;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.plugins.delphi.DelphiLanguage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InputFilePathIndexTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File baseDir;
+  private DefaultFileSystem fileSystem;
+
+  @Before
+  public void setUp() throws IOException {
+    baseDir = temp.newFolder("project");
+    fileSystem = new DefaultFileSystem(baseDir);
+  }
+
+  @Test
+  public void should_resolve_exact_relative_and_absolute_paths() {
+    InputFile unit = add("src/Unit1.pas");
+    InputFilePathIndex index = InputFilePathIndex.create(fileSystem);
+
+    assertThat(index.resolve("src/Unit1.pas")).isSameAs(unit);
+    assertThat(index.resolve(new File(baseDir, "src/Unit1.pas").getAbsolutePath())).isSameAs(unit);
+  }
+
+  @Test
+  public void should_resolve_paths_differing_by_case_separators_and_dot_segments() {
+    InputFile unit = add("src/Unit1.pas");
+    InputFilePathIndex index = InputFilePathIndex.create(fileSystem);
+
+    assertThat(index.resolve("SRC\\unit1.PAS")).isSameAs(unit);
+    assertThat(index.resolve("./src/lib/../Unit1.pas")).isSameAs(unit);
+    assertThat(index.resolve("src/./Unit1.pas")).isSameAs(unit);
+  }
+
+  @Test
+  public void should_resolve_paths_with_a_drive_letter_on_their_suffix() {
+    InputFile unit = add("src/core/Unit1.pas");
+    InputFilePathIndex index = InputFilePathIndex.create(fileSystem);
+
+    assertThat(index.resolve("D:\\agent\\_work\\3\\s\\src\\core\\Unit1.pas")).isSameAs(unit);
+    assertThat(index.unresolvedCount()).isZero();
+  }
+
+  @Test
+  public void should_require_two_matching_segments_when_the_path_has_a_directory() {
+    add("src/Unit1.pas");
+    InputFilePathIndex index = InputFilePathIndex.create(fileSystem);
+
+    // a library unit with the name of a project unit
+    assertThat(index.resolve("C:\\Components\\lib\\Unit1.pas")).isNull();
+    assertThat(index.unresolvedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_pick_the_longest_matching_suffix() {
+    add("client/src/Utils.pas");
+    InputFile serverUtils = add("server/src/Utils.pas");
+    InputFilePathIndex index = InputFilePathIndex.create(fileSystem);
+
+    assertThat(index.resolve("/home/ci/build/server/src/Utils.pas")).isSameAs(serverUtils);
+  }
+
+  @Test
+  public void should_not_resolve_ambiguous_suffixes() {
+    add("client/src/Utils.pas");
+    add("server/src/Utils.pas");
+    InputFilePathIndex index = InputFilePathIndex.create(fileSystem);
+
+    assertThat(index.resolve("/home/ci/build/src/Utils.pas")).isNull();
+  }
+
+  @Test
+  public void should_resolve_a_bare_file_name_only_when_it_is_unique() {
+    InputFile main = add("src/Main.pas");
+    add("client/Utils.pas");
+    add("server/Utils.pas");
+    InputFilePathIndex index = InputFilePathIndex.create(fileSystem);
+
+    assertThat(index.resolve("Main.pas")).isSameAs(main);
+    assertThat(index.resolve("Utils.pas")).isNull();
+  }
+
+  @Test
+  public void should_count_each_unresolved_path_once() {
+    add("src/Unit1.pas");
+    InputFilePathIndex index = InputFilePathIndex.create(fileSystem);
+
+    index.resolve("Missing.pas");
+    index.resolve("Missing.pas");
+    index.resolve("Other.pas");
+
+    assertThat(index.unresolvedCount()).isEqualTo(2);
+    assertThat(index.unresolvedSample()).containsExactly("Missing.pas", "Other.pas");
+  }
+
+  @Test
+  public void should_normalize_paths() {
+    assertThat(InputFilePathIndex.normalize("C:\\Work\\Src\\..\\Lib\\.\\Unit1.pas")).isEqualTo("work/lib/unit1.pas");
+    assertThat(InputFilePathIndex.normalize("/work//src/Unit1.pas")).isEqualTo("work/src/unit1.pas");
+    assertThat(InputFilePathIndex.normalize("../src/Unit1.pas")).isEqualTo("../src/unit1.pas");
+  }
+
+  private InputFile add(String relativePath) {
+    InputFile inputFile = new TestInputFileBuilder("module", relativePath)
+      .setModuleBaseDir(baseDir.toPath())
+      .setLanguage(DelphiLanguage.KEY)
+      .setType(InputFile.Type.MAIN)
+      .setLines(10)
+      .build();
+    fileSystem.add(inputFile);
+    return inputFile;
+  }
+
+}
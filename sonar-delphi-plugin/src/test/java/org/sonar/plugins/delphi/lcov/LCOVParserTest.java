@@ -0,0 +1,177 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.lcov;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.coverage.NewCoverage;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.plugins.delphi.DelphiLanguage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LCOVParserTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private SensorContextTester context;
+  private InputFile unit;
+
+  @Before
+  public void setUp() throws IOException {
+    File baseDir = temp.newFolder("project");
+    context = SensorContextTester.create(baseDir);
+    unit = new TestInputFileBuilder("module", "src/Unit1.pas")
+      .setModuleBaseDir(baseDir.toPath())
+      .setLanguage(DelphiLanguage.KEY)
+      .setType(InputFile.Type.MAIN)
+      .setLines(10)
+      .build();
+    context.fileSystem().add(unit);
+  }
+
+  @Test
+  public void should_count_not_taken_branches_as_uncovered() throws IOException {
+    File report = report("report.lcov",
+      "SF:src/Unit1.pas",
+      "BRDA:3,0,0,-",
+      "BRDA:3,0,1,2",
+      "end_of_record");
+
+    LCOVParser parser = LCOVParser.create(context, report);
+    save(parser);
+
+    assertThat(context.conditions(unit.key(), 3)).isEqualTo(2);
+    assertThat(context.coveredConditions(unit.key(), 3)).isEqualTo(1);
+    assertThat(parser.inconsistenciesNumber()).isZero();
+  }
+
+  @Test
+  public void should_merge_records_of_the_same_file_across_reports() throws IOException {
+    File first = report("first.lcov",
+      "SF:src/Unit1.pas",
+      "DA:1,1",
+      "DA:2,0",
+      "BRDA:4,0,0,0",
+      "BRDA:4,0,1,1",
+      "end_of_record");
+    File second = report("second.lcov",
+      "SF:src/Unit1.pas",
+      "DA:1,2",
+      "DA:2,3",
+      "BRDA:4,0,0,5",
+      "end_of_record");
+
+    save(LCOVParser.create(context, first, second));
+
+    assertThat(context.lineHits(unit.key(), 1)).isEqualTo(3);
+    assertThat(context.lineHits(unit.key(), 2)).isEqualTo(3);
+    assertThat(context.conditions(unit.key(), 4)).isEqualTo(2);
+    assertThat(context.coveredConditions(unit.key(), 4)).isEqualTo(2);
+  }
+
+  @Test
+  public void should_merge_reports_read_in_parallel_like_reports_read_in_sequence() throws IOException {
+    File first = report("first.lcov", "SF:src/Unit1.pas", "DA:1,1", "BRDA:2,0,0,1", "end_of_record");
+    File second = report("second.lcov", "SF:src/Unit1.pas", "DA:1,4", "BRDA:2,0,1,0", "end_of_record");
+
+    save(LCOVParser.create(context, 2, first, second));
+
+    assertThat(context.lineHits(unit.key(), 1)).isEqualTo(5);
+    assertThat(context.conditions(unit.key(), 2)).isEqualTo(2);
+    assertThat(context.coveredConditions(unit.key(), 2)).isEqualTo(1);
+  }
+
+  @Test
+  public void should_read_reports_with_crlf_line_endings() throws IOException {
+    File report = temp.newFile("crlf.lcov");
+    Files.write(report.toPath(), "SF:src/Unit1.pas\r\nDA:1,7\r\nBRDA:2,0,0,1\r\nend_of_record\r\n"
+      .getBytes(StandardCharsets.UTF_8));
+
+    LCOVParser parser = LCOVParser.create(context, report);
+    save(parser);
+
+    assertThat(context.lineHits(unit.key(), 1)).isEqualTo(7);
+    assertThat(context.conditions(unit.key(), 2)).isEqualTo(1);
+    assertThat(parser.inconsistenciesNumber()).isZero();
+    assertThat(parser.unresolvedPathsCount()).isZero();
+  }
+
+  @Test
+  public void should_resolve_windows_paths_of_another_build_agent() throws IOException {
+    File report = report("windows.lcov",
+      "SF:C:\\BuildAgent\\work\\1a2b\\src\\Unit1.pas",
+      "DA:1,1",
+      "end_of_record");
+
+    save(LCOVParser.create(context, report));
+
+    assertThat(context.lineHits(unit.key(), 1)).isEqualTo(1);
+  }
+
+  @Test
+  public void should_count_lines_out_of_the_file_as_inconsistencies() throws IOException {
+    File report = report("report.lcov",
+      "SF:src/Unit1.pas",
+      "DA:11,1",
+      "BRDA:0,0,0,1",
+      "DA:1,x",
+      "end_of_record");
+
+    LCOVParser parser = LCOVParser.create(context, report);
+
+    assertThat(parser.inconsistenciesNumber()).isEqualTo(3);
+  }
+
+  @Test
+  public void should_report_unresolved_paths() throws IOException {
+    File report = report("report.lcov",
+      "SF:C:\\Program Files\\Embarcadero\\Studio\\source\\rtl\\sys\\System.SysUtils.pas",
+      "DA:1,1",
+      "end_of_record");
+
+    LCOVParser parser = LCOVParser.create(context, report);
+
+    assertThat(parser.coverageByFile()).isEmpty();
+    assertThat(parser.unresolvedPathsCount()).isEqualTo(1);
+    assertThat(parser.unresolvedPathsSample())
+      .containsExactly("C:\\Program Files\\Embarcadero\\Studio\\source\\rtl\\sys\\System.SysUtils.pas");
+  }
+
+  private File report(String name, String... lines) throws IOException {
+    File report = temp.newFile(name);
+    Files.write(report.toPath(), String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    return report;
+  }
+
+  private static void save(LCOVParser parser) {
+    parser.coverageByFile().values().forEach(NewCoverage::save);
+  }
+
+}
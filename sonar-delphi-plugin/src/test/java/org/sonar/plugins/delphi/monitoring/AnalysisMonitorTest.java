@@ -0,0 +1,133 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.monitoring;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.plugins.delphi.monitoring.AnalysisMonitor.Category;
+import org.sonar.plugins.delphi.monitoring.AnalysisMonitor.Measurement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class AnalysisMonitorTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void should_write_measurements_as_json() throws IOException {
+    AnalysisMonitor monitor = AnalysisMonitor.enabled();
+    for (int i = 0; i < 3; i++) {
+      try (Measurement ignored = monitor.start(Category.PHASE, AnalysisMonitor.PARSE)) {
+        // measured
+      }
+    }
+    monitor.record(Category.CHECK, "EmptyBlockCheck", 2_000_000L);
+    monitor.record(Category.CHECK, "EmptyBlockCheck", 3_000_000L);
+
+    Path reportPath = temp.getRoot().toPath().resolve("reports/monitoring.json");
+    monitor.report(reportPath);
+
+    Map<String, JsonObject> entries = readReport(reportPath);
+    assertThat(entries).containsOnlyKeys("PHASE:" + AnalysisMonitor.PARSE, "CHECK:EmptyBlockCheck");
+    assertThat(entries.get("PHASE:" + AnalysisMonitor.PARSE).get("calls").getAsLong()).isEqualTo(3);
+    JsonObject check = entries.get("CHECK:EmptyBlockCheck");
+    assertThat(check.get("calls").getAsLong()).isEqualTo(2);
+    assertThat(check.get("timeMillis").getAsLong()).isEqualTo(5);
+    assertThat(check.get("allocatedBytes").getAsLong()).isZero();
+  }
+
+  @Test
+  public void should_sort_the_report_slowest_first() throws IOException {
+    AnalysisMonitor monitor = AnalysisMonitor.enabled();
+    monitor.record(Category.VISITOR, "fast", 1_000_000L);
+    monitor.record(Category.VISITOR, "slow", 9_000_000L);
+    monitor.record(Category.VISITOR, "medium", 4_000_000L);
+
+    Path reportPath = temp.getRoot().toPath().resolve("monitoring.json");
+    monitor.report(reportPath);
+
+    JsonArray entries = readArray(reportPath);
+    assertThat(entries.get(0).getAsJsonObject().get("name").getAsString()).isEqualTo("slow");
+    assertThat(entries.get(1).getAsJsonObject().get("name").getAsString()).isEqualTo("medium");
+    assertThat(entries.get(2).getAsJsonObject().get("name").getAsString()).isEqualTo("fast");
+  }
+
+  @Test
+  public void should_record_steps_which_throw() throws IOException {
+    AnalysisMonitor monitor = AnalysisMonitor.enabled();
+    try (Measurement ignored = monitor.start(Category.PHASE, AnalysisMonitor.SCAN)) {
+      throw new IllegalStateException("time budget exceeded");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+
+    Path reportPath = temp.getRoot().toPath().resolve("monitoring.json");
+    monitor.report(reportPath);
+
+    assertThat(readReport(reportPath).get("PHASE:" + AnalysisMonitor.SCAN).get("calls").getAsLong()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_not_record_nor_write_anything_when_disabled() {
+    AnalysisMonitor monitor = AnalysisMonitor.disabled();
+    try (Measurement ignored = monitor.start(Category.PHASE, AnalysisMonitor.PARSE)) {
+      // not measured
+    }
+    monitor.record(Category.CHECK, "EmptyBlockCheck", 1_000_000L);
+
+    Path reportPath = temp.getRoot().toPath().resolve("monitoring.json");
+    monitor.report(reportPath);
+
+    assertThat(monitor.isEnabled()).isFalse();
+    assertThat(reportPath).doesNotExist();
+  }
+
+  private static Map<String, JsonObject> readReport(Path reportPath) throws IOException {
+    Map<String, JsonObject> entries = new HashMap<>();
+    for (JsonElement element : readArray(reportPath)) {
+      JsonObject entry = element.getAsJsonObject();
+      if (entries.put(entry.get("category").getAsString() + ":" + entry.get("name").getAsString(), entry) != null) {
+        fail("Duplicate entry " + entry);
+      }
+    }
+    return entries;
+  }
+
+  private static JsonArray readArray(Path reportPath) throws IOException {
+    try (Reader reader = Files.newBufferedReader(reportPath, StandardCharsets.UTF_8)) {
+      return new Gson().fromJson(reader, JsonArray.class);
+    }
+  }
+
+}
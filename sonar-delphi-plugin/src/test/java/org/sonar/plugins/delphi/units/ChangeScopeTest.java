@@ -0,0 +1,147 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.junit.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChangeScopeTest {
+
+  /**
+   * A uses B, which uses C, which uses D.
+   */
+  private final UnitDependencyGraph graph = graph(
+    unit("A", "B"),
+    unit("B", "C"),
+    unit("C", "D"),
+    unit("D"));
+
+  @Test
+  public void should_contain_the_changed_files_and_their_dependents_up_to_the_depth() {
+    List<InputFile> files = files("D");
+
+    assertThat(scannedUnits(files, ChangeScope.compute(files, graph, UnitDependencyGraph.empty(), 0))).containsExactly("C", "D");
+    assertThat(scannedUnits(files, ChangeScope.compute(files, graph, UnitDependencyGraph.empty(), 1))).containsExactly("B", "C", "D");
+    assertThat(scannedUnits(files, ChangeScope.compute(files, graph, UnitDependencyGraph.empty(), -1))).containsExactly("A", "B", "C", "D");
+  }
+
+  @Test
+  public void should_not_count_changed_files_as_dependents() {
+    List<InputFile> files = files("C", "D");
+
+    ChangeScope scope = ChangeScope.compute(files, graph, UnitDependencyGraph.empty(), 0);
+
+    assertThat(scope.changedCount()).isEqualTo(2);
+    assertThat(scope.dependentCount()).isEqualTo(1);
+    assertThat(scannedUnits(files, scope)).containsExactly("B", "C", "D");
+  }
+
+  @Test
+  public void should_contain_the_users_of_a_deleted_unit_up_to_the_depth() {
+    // E was deleted, D used it
+    UnitDependencyGraph previousGraph = graph(
+      unit("A", "B"),
+      unit("B", "C"),
+      unit("C", "D"),
+      unit("D", "E"),
+      unit("E"));
+    UnitDependencyGraph currentGraph = graph(
+      unit("A", "B"),
+      unit("B", "C"),
+      unit("C", "D"),
+      unit("D", "E"));
+    List<InputFile> files = files();
+
+    assertThat(scannedUnits(files, ChangeScope.compute(files, currentGraph, previousGraph, 0))).containsExactly("D");
+    assertThat(scannedUnits(files, ChangeScope.compute(files, currentGraph, previousGraph, 1))).containsExactly("C", "D");
+    assertThat(scannedUnits(files, ChangeScope.compute(files, currentGraph, previousGraph, -1))).containsExactly("A", "B", "C", "D");
+  }
+
+  @Test
+  public void should_contain_nothing_else_without_changes() {
+    List<InputFile> files = files();
+
+    ChangeScope scope = ChangeScope.compute(files, graph, graph, -1);
+
+    assertThat(scope.changedCount()).isZero();
+    assertThat(scope.dependentCount()).isZero();
+  }
+
+  @Test
+  public void should_not_compute_a_scope_when_a_status_is_unknown() {
+    List<InputFile> files = ImmutableList.of(file("A", InputFile.Status.CHANGED), file("B", null));
+
+    assertThat(ChangeScope.compute(files, graph, UnitDependencyGraph.empty(), -1)).isNull();
+  }
+
+  /**
+   * Files of the units A to D, with the changed ones.
+   */
+  private static List<InputFile> files(String... changedUnits) {
+    List<String> changed = ImmutableList.copyOf(changedUnits);
+    ImmutableList.Builder<InputFile> files = ImmutableList.builder();
+    for (String unit : ImmutableList.of("A", "B", "C", "D")) {
+      files.add(file(unit, changed.contains(unit) ? InputFile.Status.CHANGED : InputFile.Status.SAME));
+    }
+    return files.build();
+  }
+
+  private static InputFile file(String unit, @Nullable InputFile.Status status) {
+    return new TestInputFileBuilder("module", path(unit))
+      .setStatus(status)
+      .build();
+  }
+
+  private static List<String> scannedUnits(List<InputFile> files, ChangeScope scope) {
+    ImmutableList.Builder<String> units = ImmutableList.builder();
+    for (InputFile file : files) {
+      if (scope.contains(file)) {
+        units.add(file.filename().replace(".pas", ""));
+      }
+    }
+    return units.build();
+  }
+
+  private static UnitDependencyGraph graph(UnitDeclaration... units) {
+    Map<String, UnitDeclaration> declarations = new HashMap<>();
+    for (UnitDeclaration unit : units) {
+      declarations.put(path(unit.name()), unit);
+    }
+    return new UnitDependencyGraph(declarations);
+  }
+
+  private static UnitDeclaration unit(String name, String... uses) {
+    return new UnitDeclaration(name, ImmutableList.copyOf(uses), Collections.emptyList());
+  }
+
+  private static String path(String unit) {
+    return "src/" + unit + ".pas";
+  }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.plugins.delphi.DelphiLanguage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DependencyHashesTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File baseDir;
+  private Path indexFile;
+  private final List<InputFile> files = new ArrayList<>();
+  private long lastModified = 1_500_000_000_000L;
+
+  @Before
+  public void setUp() throws IOException {
+    baseDir = temp.newFolder("project");
+    indexFile = temp.getRoot().toPath().resolve("cache").resolve(UnitDependencyIndexer.INDEX_FILE_NAME);
+    write("A.pas", "unit A; interface uses B; implementation end.");
+    write("B.pas", "unit B; interface implementation uses C; end.");
+    write("C.pas", "unit C; interface procedure P; implementation procedure P; begin end; end.");
+  }
+
+  @Test
+  public void should_not_change_when_only_the_implementation_of_a_used_unit_changes() throws IOException {
+    String hash = dependencyHashes().of("A");
+
+    write("C.pas", "unit C; interface procedure P; implementation procedure P; begin WriteLn; end; end.");
+
+    assertThat(dependencyHashes().of("A")).isEqualTo(hash);
+  }
+
+  @Test
+  public void should_change_with_the_interface_of_a_unit_used_indirectly() throws IOException {
+    String hash = dependencyHashes().of("A");
+
+    write("C.pas", "unit C; interface procedure P(X: Integer); implementation procedure P; begin end; end.");
+
+    assertThat(dependencyHashes().of("A")).isNotEqualTo(hash);
+  }
+
+  @Test
+  public void should_change_with_the_uses_clauses_of_a_used_unit() throws IOException {
+    String hash = dependencyHashes().of("A");
+
+    write("D.pas", "unit D; interface implementation end.");
+    String hashWithD = dependencyHashes().of("A");
+    write("B.pas", "unit B; interface implementation uses C, D; end.");
+
+    assertThat(hashWithD).isEqualTo(hash);
+    assertThat(dependencyHashes().of("A")).isNotEqualTo(hash);
+  }
+
+  @Test
+  public void should_be_empty_for_units_using_no_unit_of_the_project() {
+    assertThat(dependencyHashes().of("C")).isEmpty();
+    assertThat(dependencyHashes().of("Unknown")).isEmpty();
+  }
+
+  @Test
+  public void should_compute_the_hash_of_a_unit_once() {
+    DependencyHashes dependencyHashes = dependencyHashes();
+
+    assertThat(dependencyHashes.of("a")).isSameAs(dependencyHashes.of("A"));
+  }
+
+  private DependencyHashes dependencyHashes() {
+    UnitDependencyIndexer indexer = new UnitDependencyIndexer(indexFile,
+      inputFile -> new String(Files.readAllBytes(inputFile.path()), StandardCharsets.UTF_8));
+    UnitDependencyGraph graph = indexer.index(files);
+    return new DependencyHashes(graph, indexer.summaries());
+  }
+
+  private void write(String relativePath, String contents) throws IOException {
+    Path path = baseDir.toPath().resolve(relativePath);
+    Files.write(path, contents.getBytes(StandardCharsets.UTF_8));
+    // the index tells changed files by size or modification time
+    lastModified += 1000L;
+    Files.setLastModifiedTime(path, FileTime.fromMillis(lastModified));
+    files.removeIf(inputFile -> inputFile.relativePath().equals(relativePath));
+    files.add(new TestInputFileBuilder("module", relativePath)
+      .setModuleBaseDir(baseDir.toPath())
+      .setLanguage(DelphiLanguage.KEY)
+      .setType(InputFile.Type.MAIN)
+      .build());
+  }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import org.junit.Test;
+import org.sonar.plugins.delphi.units.ExportedSymbol.Kind;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InterfaceScannerTest {
+
+  private static final String UNIT = ""
+    + "unit Unit1;\n"
+    + "interface\n"
+    + "uses Classes;\n"
+    + "type\n"
+    + "  TFoo = class(TObject)\n"
+    + "  public\n"
+    + "    procedure Bar; virtual;\n"
+    + "    property Baz: Integer read FBaz;\n"
+    + "  end;\n"
+    + "const\n"
+    + "  C = 1;\n"
+    + "var\n"
+    + "  V: Integer;\n"
+    + "procedure P(A: { comment } Integer);\n"
+    + "implementation\n"
+    + "procedure Hidden;\n"
+    + "begin\n"
+    + "end;\n"
+    + "end.\n";
+
+  @Test
+  public void should_read_the_declarations_of_the_interface_section() {
+    UnitSummary summary = InterfaceScanner.scan(UNIT);
+
+    assertThat(summary.unitName()).isEqualTo("Unit1");
+    assertThat(summary.symbols("TFoo")).extracting(ExportedSymbol::kind).containsExactly(Kind.TYPE);
+    assertThat(summary.symbols("C")).extracting(ExportedSymbol::kind).containsExactly(Kind.CONSTANT);
+    assertThat(summary.symbols("V")).extracting(ExportedSymbol::kind).containsExactly(Kind.VARIABLE);
+    assertThat(summary.symbols("P")).extracting(ExportedSymbol::kind).containsExactly(Kind.ROUTINE);
+    assertThat(summary.symbols("Hidden")).isEmpty();
+  }
+
+  @Test
+  public void should_read_the_members_of_types() {
+    UnitSummary summary = InterfaceScanner.scan(UNIT);
+
+    assertThat(summary.members("TFoo")).extracting(ExportedSymbol::name).containsExactly("Bar", "Baz");
+    assertThat(summary.symbols("Bar")).extracting(ExportedSymbol::kind).containsExactly(Kind.METHOD);
+    assertThat(summary.symbols("Baz")).extracting(ExportedSymbol::kind).containsExactly(Kind.PROPERTY);
+  }
+
+  @Test
+  public void should_collapse_whitespaces_and_comments_in_signatures() {
+    UnitSummary summary = InterfaceScanner.scan(UNIT);
+
+    assertThat(summary.symbols("P").get(0).signature()).isEqualTo("procedure P(A: Integer)");
+  }
+
+  @Test
+  public void should_only_summarize_units() {
+    assertThat(InterfaceScanner.scan("program Project1; begin end.")).isNull();
+    assertThat(InterfaceScanner.scan("")).isNull();
+  }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LexerTest {
+
+  @Test
+  public void should_skip_whitespaces_comments_and_directives() {
+    Lexer lexer = new Lexer("\uFEFF // line\r\n{ brace } (* parenthesis *) {$IFDEF X} (*$ENDIF*) word");
+
+    assertThat(lexer.next()).isEqualTo(Lexer.Kind.WORD);
+    assertThat(lexer.text()).isEqualTo("word");
+    assertThat(lexer.next()).isEqualTo(Lexer.Kind.END);
+  }
+
+  @Test
+  public void should_end_in_unterminated_comments() {
+    assertThat(new Lexer("{ unterminated").next()).isEqualTo(Lexer.Kind.END);
+    assertThat(new Lexer("(* unterminated").next()).isEqualTo(Lexer.Kind.END);
+  }
+
+  @Test
+  public void should_read_strings_with_quotes_and_character_codes() {
+    Lexer lexer = new Lexer("'it''s'#13#$0A'end' next");
+
+    assertThat(lexer.next()).isEqualTo(Lexer.Kind.STRING);
+    assertThat(lexer.text()).isEqualTo("'it''s'#13#$0A'end'");
+    assertThat(lexer.next()).isEqualTo(Lexer.Kind.WORD);
+    assertThat(lexer.text()).isEqualTo("next");
+  }
+
+  @Test
+  public void should_stop_unterminated_strings_at_the_end_of_the_line() {
+    Lexer lexer = new Lexer("'unterminated\nnext");
+
+    assertThat(lexer.next()).isEqualTo(Lexer.Kind.STRING);
+    assertThat(lexer.next()).isEqualTo(Lexer.Kind.WORD);
+    assertThat(lexer.text()).isEqualTo("next");
+  }
+
+  @Test
+  public void should_read_escaped_identifiers_without_ampersand() {
+    Lexer lexer = new Lexer("&Type");
+
+    assertThat(lexer.next()).isEqualTo(Lexer.Kind.WORD);
+    assertThat(lexer.text()).isEqualTo("Type");
+    assertThat(lexer.isWord("type")).isTrue();
+  }
+
+  @Test
+  public void should_read_symbols_one_character_at_a_time() {
+    Lexer lexer = new Lexer("a:=1;");
+
+    lexer.next();
+    assertThat(lexer.next()).isEqualTo(Lexer.Kind.SYMBOL);
+    assertThat(lexer.isSymbol(':')).isTrue();
+    assertThat(lexer.next()).isEqualTo(Lexer.Kind.SYMBOL);
+    assertThat(lexer.isSymbol('=')).isTrue();
+    assertThat(lexer.next()).isEqualTo(Lexer.Kind.WORD);
+    assertThat(lexer.text()).isEqualTo("1");
+    assertThat(lexer.next()).isEqualTo(Lexer.Kind.SYMBOL);
+    assertThat(lexer.isSymbol(';')).isTrue();
+  }
+
+  @Test
+  public void should_read_dotted_names_and_leave_the_next_token() {
+    Lexer lexer = new Lexer("System . { comment } SysUtils, Next.;");
+
+    lexer.next();
+    assertThat(lexer.dottedName()).isEqualTo("System.SysUtils");
+    assertThat(lexer.next()).isEqualTo(Lexer.Kind.SYMBOL);
+    assertThat(lexer.isSymbol(',')).isTrue();
+
+    lexer.next();
+    assertThat(lexer.dottedName()).isEqualTo("Next");
+    assertThat(lexer.next()).isEqualTo(Lexer.Kind.SYMBOL);
+    assertThat(lexer.isSymbol(';')).isTrue();
+  }
+
+  @Test
+  public void should_give_back_the_pushed_back_token() {
+    Lexer lexer = new Lexer("a b");
+
+    lexer.next();
+    lexer.pushBack();
+    assertThat(lexer.next()).isEqualTo(Lexer.Kind.WORD);
+    assertThat(lexer.text()).isEqualTo("a");
+  }
+
+}
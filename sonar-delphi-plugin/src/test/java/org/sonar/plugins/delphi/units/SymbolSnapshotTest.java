@@ -0,0 +1,119 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.plugins.delphi.DelphiPlugin;
+import org.sonar.plugins.delphi.cache.FileResultCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SymbolSnapshotTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File baseDir;
+  private Path sourceDirectory;
+  private SensorContextTester context;
+
+  @Before
+  public void setUp() throws IOException {
+    baseDir = temp.newFolder("project");
+    sourceDirectory = temp.newFolder("source").toPath();
+    context = SensorContextTester.create(baseDir);
+    context.setSettings(new MapSettings().setProperty(DelphiPlugin.SYMBOL_SNAPSHOT, "snapshots/delphi.bin"));
+  }
+
+  @Test
+  public void should_resolve_the_configured_file_against_the_base_directory() {
+    Path file = SymbolSnapshot.configuredFile(context).get();
+    assertThat(file.isAbsolute()).isTrue();
+    assertThat(file.endsWith(Paths.get("snapshots", "delphi.bin"))).isTrue();
+
+    context.setSettings(new MapSettings().setProperty(DelphiPlugin.SYMBOL_SNAPSHOT, " "));
+    assertThat(SymbolSnapshot.configuredFile(context)).isEmpty();
+  }
+
+  @Test
+  public void should_load_a_generated_snapshot_once_per_version_of_the_file() throws IOException {
+    Path file = generate("unit System.SysUtils; interface procedure FreeAndNil(var Obj); implementation end.", 1_000L);
+
+    SymbolSnapshot snapshot = SymbolSnapshot.load(file);
+    assertThat(snapshot.compilerVersion()).isEqualTo("22.0");
+    assertThat(snapshot.summary("SysUtils").unitName()).isEqualTo("System.SysUtils");
+    assertThat(snapshot.unitsDeclaring("freeandnil")).containsExactly("System.SysUtils");
+    assertThat(SymbolSnapshot.load(file)).isSameAs(snapshot);
+
+    generate("unit System.Classes; interface type TList = class end; implementation end.", 2_000L);
+    SymbolSnapshot regenerated = SymbolSnapshot.load(file);
+    assertThat(regenerated).isNotSameAs(snapshot);
+    assertThat(regenerated.summary("Classes")).isNotNull();
+  }
+
+  @Test
+  public void should_be_empty_when_the_file_cannot_be_read() throws IOException {
+    Path file = context.fileSystem().resolvePath("snapshots/delphi.bin").toPath();
+
+    assertThat(SymbolSnapshot.load(file).isEmpty()).isTrue();
+
+    Files.createDirectories(file.getParent());
+    Files.write(file, "not a snapshot".getBytes(StandardCharsets.UTF_8));
+    assertThat(SymbolSnapshot.load(file).isEmpty()).isTrue();
+  }
+
+  @Test
+  public void should_change_the_analysis_fingerprint_when_the_snapshot_is_generated_again() throws IOException {
+    generate("unit System.SysUtils; interface implementation end.", 1_000L);
+    String fingerprint = FileResultCache.fingerprint(context, Collections.emptyList());
+
+    assertThat(FileResultCache.fingerprint(context, Collections.emptyList())).isEqualTo(fingerprint);
+
+    generate("unit System.SysUtils; interface procedure Beep; implementation end.", 2_000L);
+    assertThat(FileResultCache.fingerprint(context, Collections.emptyList())).isNotEqualTo(fingerprint);
+  }
+
+  /**
+   * Generates the configured snapshot from a single unit, with the modification time of a file written at
+   * {@code lastModified}.
+   */
+  private Path generate(String unitSource, long lastModified) throws IOException {
+    Files.write(sourceDirectory.resolve("Unit.pas"), unitSource.getBytes(StandardCharsets.UTF_8));
+    Path file = SymbolSnapshot.configuredFile(context).get();
+    Files.createDirectories(file.getParent());
+    SymbolSnapshotGenerator.generate(sourceDirectory, "22.0").writeTo(file);
+    Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified));
+    return file;
+  }
+
+}
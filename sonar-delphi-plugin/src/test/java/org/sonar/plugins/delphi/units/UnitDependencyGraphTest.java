@@ -0,0 +1,83 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class UnitDependencyGraphTest {
+
+  @Test
+  public void should_link_units_case_insensitively() {
+    Map<String, UnitDeclaration> declarations = new LinkedHashMap<>();
+    declarations.put("A.pas", unit("A", "b", "System.SysUtils"));
+    declarations.put("B.pas", unit("B", "C"));
+    declarations.put("C.pas", unit("C"));
+    UnitDependencyGraph graph = new UnitDependencyGraph(declarations);
+
+    assertThat(graph.pathOf("a")).isEqualTo("A.pas");
+    assertThat(graph.contains("System.SysUtils")).isFalse();
+    assertThat(graph.dependencies("A")).containsExactly("b");
+    assertThat(graph.dependents("b")).containsExactly("A");
+    assertThat(graph.transitiveDependencies("A")).containsExactly("b", "C");
+    assertThat(graph.transitiveDependents("C", -1)).containsExactly("B", "A");
+    assertThat(graph.transitiveDependents("C", 0)).containsExactly("B");
+  }
+
+  @Test
+  public void should_pick_the_first_path_for_a_unit_declared_by_several_files() {
+    Map<String, UnitDeclaration> declarations = new LinkedHashMap<>();
+    declarations.put("src/z/Unit1.pas", unit("Unit1", "B"));
+    declarations.put("src/a/unit1.pas", unit("unit1", "C"));
+    declarations.put("src/B.pas", unit("B"));
+    declarations.put("src/C.pas", unit("C"));
+    declarations.put("src/D.pas", unit("D", "Unit1"));
+
+    Map<String, UnitDeclaration> reversed = new LinkedHashMap<>();
+    ImmutableList.copyOf(declarations.keySet()).reverse().forEach(path -> reversed.put(path, declarations.get(path)));
+
+    for (UnitDependencyGraph graph : ImmutableList.of(new UnitDependencyGraph(declarations), new UnitDependencyGraph(reversed))) {
+      assertThat(graph.pathOf("Unit1")).isEqualTo("src/a/unit1.pas");
+      assertThat(graph.duplicatePaths()).containsExactly(entry("src/z/Unit1.pas", "src/a/unit1.pas"));
+      assertThat(graph.units()).hasSize(4);
+      assertThat(graph.dependencies("Unit1")).containsExactly("C");
+      assertThat(graph.dependents("B")).isEmpty();
+      assertThat(graph.transitiveDependencies("D")).containsExactly("Unit1", "C");
+    }
+  }
+
+  @Test
+  public void should_be_empty() {
+    assertThat(UnitDependencyGraph.empty().size()).isZero();
+    assertThat(UnitDependencyGraph.empty().units()).isEmpty();
+    assertThat(UnitDependencyGraph.empty().dependencies("A")).isEmpty();
+  }
+
+  private static UnitDeclaration unit(String name, String... uses) {
+    return new UnitDeclaration(name, ImmutableList.copyOf(uses), Collections.emptyList());
+  }
+
+}
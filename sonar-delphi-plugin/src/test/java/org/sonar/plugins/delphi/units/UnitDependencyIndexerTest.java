@@ -0,0 +1,152 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.plugins.delphi.DelphiLanguage;
+import org.sonar.plugins.delphi.cache.AnalysisCache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UnitDependencyIndexerTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File baseDir;
+  private Path indexFile;
+  private final List<String> scannedPaths = new ArrayList<>();
+
+  @Before
+  public void setUp() throws IOException {
+    baseDir = temp.newFolder("project");
+    indexFile = temp.getRoot().toPath().resolve("cache").resolve(UnitDependencyIndexer.INDEX_FILE_NAME);
+  }
+
+  @Test
+  public void should_only_scan_files_whose_size_or_modification_time_changed() throws IOException {
+    List<InputFile> files = ImmutableList.of(
+      write("A.pas", "unit A; interface uses B; implementation end."),
+      write("B.pas", "unit B; interface implementation end."));
+
+    UnitDependencyGraph graph = indexer().index(files);
+    assertThat(graph.dependencies("A")).containsExactly("B");
+    assertThat(scannedPaths).containsOnly("A.pas", "B.pas");
+
+    scannedPaths.clear();
+    graph = indexer().index(files);
+    assertThat(graph.dependencies("A")).containsExactly("B");
+    assertThat(scannedPaths).isEmpty();
+  }
+
+  @Test
+  public void should_scan_again_a_file_found_to_differ_from_the_index() throws IOException {
+    InputFile unitA = write("A.pas", "unit A; interface uses B; implementation end.");
+    InputFile unitB = write("B.pas", "unit B; interface implementation end.");
+    List<InputFile> files = ImmutableList.of(unitA, unitB, write("C.pas", "unit C; interface implementation end."));
+    indexer().index(files);
+
+    // same size and modification time
+    FileTime lastModified = Files.getLastModifiedTime(unitA.path());
+    String newContents = "unit A; interface uses C; implementation end.";
+    Files.write(unitA.path(), newContents.getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(unitA.path(), lastModified);
+
+    UnitDependencyIndexer indexer = indexer();
+    assertThat(indexer.index(files).dependencies("A")).containsExactly("B");
+    assertThat(indexer.matchesIndex(unitB, AnalysisCache.contentHash("unit B; interface implementation end."))).isTrue();
+    assertThat(indexer.matchesIndex(unitA, AnalysisCache.contentHash(newContents))).isFalse();
+    indexer.saveStaleEntries();
+
+    scannedPaths.clear();
+    assertThat(indexer().index(files).dependencies("A")).containsExactly("C");
+    assertThat(scannedPaths).containsExactly("A.pas");
+  }
+
+  @Test
+  public void should_use_the_file_which_stands_for_a_unit_declared_twice() throws IOException {
+    List<InputFile> files = ImmutableList.of(
+      write("z/Unit1.pas", "unit Unit1; interface procedure Bar; implementation end."),
+      write("a/Unit1.pas", "unit Unit1; interface procedure Foo; implementation end."));
+
+    UnitDependencyIndexer indexer = indexer();
+    UnitDependencyGraph graph = indexer.index(files);
+
+    assertThat(graph.pathOf("Unit1")).isEqualTo("a/Unit1.pas");
+    assertThat(graph.duplicatePaths()).containsOnlyKeys("z/Unit1.pas");
+    UnitSummary summary = indexer.summaries().summary("Unit1");
+    assertThat(summary.symbols("Foo")).isNotEmpty();
+    assertThat(summary.symbols("Bar")).isEmpty();
+  }
+
+  @Test
+  public void should_hash_the_interface_of_a_unit_only() {
+    String unit = "unit A; interface uses B; procedure P; implementation procedure P; begin end; end.";
+
+    assertThat(interfaceHash("unit A; interface uses B; procedure P; implementation procedure P; begin Foo; end; end."))
+      .isEqualTo(interfaceHash(unit));
+    assertThat(interfaceHash("unit A; interface uses B; procedure P; implementation uses C; procedure P; begin end; end."))
+      .isNotEqualTo(interfaceHash(unit));
+    assertThat(interfaceHash("unit A; interface { comment } uses B;\n procedure   P; implementation procedure P; begin end; end."))
+      .isEqualTo(interfaceHash(unit));
+    assertThat(interfaceHash("unit A; interface uses B; procedure P(X: Integer); implementation procedure P; begin end; end."))
+      .isNotEqualTo(interfaceHash(unit));
+    assertThat(interfaceHash("unit A; interface uses B, C; procedure P; implementation procedure P; begin end; end."))
+      .isNotEqualTo(interfaceHash(unit));
+  }
+
+  private UnitDependencyIndexer indexer() {
+    return new UnitDependencyIndexer(indexFile, inputFile -> {
+      scannedPaths.add(inputFile.relativePath());
+      return new String(Files.readAllBytes(inputFile.path()), StandardCharsets.UTF_8);
+    });
+  }
+
+  private static String interfaceHash(String source) {
+    return UnitDependencyIndexer.interfaceHash(UsesScanner.scan(source), InterfaceScanner.scan(source));
+  }
+
+  private InputFile write(String relativePath, String contents) throws IOException {
+    Path path = baseDir.toPath().resolve(relativePath);
+    Files.createDirectories(path.getParent());
+    Files.write(path, contents.getBytes(StandardCharsets.UTF_8));
+    return new TestInputFileBuilder("module", relativePath)
+      .setModuleBaseDir(baseDir.toPath())
+      .setLanguage(DelphiLanguage.KEY)
+      .setType(InputFile.Type.MAIN)
+      .setCharset(StandardCharsets.UTF_8)
+      .build();
+  }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * SonarQube Delphi Plugin
+ * Copyright (C) 2018 Maykon Luís Capellari
+ * mailto:maykonluiscapellari AT gmail DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.delphi.units;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UsesScannerTest {
+
+  @Test
+  public void should_read_the_uses_clauses_of_both_sections_of_a_unit() {
+    UnitDeclaration declaration = UsesScanner.scan(""
+      + "unit Unit1;\n"
+      + "interface\n"
+      + "uses A, B;\n"
+      + "type TFoo = class end;\n"
+      + "implementation\n"
+      + "uses C;\n"
+      + "end.\n");
+
+    assertThat(declaration.name()).isEqualTo("Unit1");
+    assertThat(declaration.interfaceUses()).containsExactly("A", "B");
+    assertThat(declaration.implementationUses()).containsExactly("C");
+  }
+
+  @Test
+  public void should_skip_comments_in_uses_clauses() {
+    UnitDeclaration declaration = UsesScanner.scan(""
+      + "unit Unit1;\n"
+      + "interface\n"
+      + "uses A, {B,} C (* , D *), // E,\n"
+      + "  F;\n"
+      + "implementation\n"
+      + "end.\n");
+
+    assertThat(declaration.interfaceUses()).containsExactly("A", "C", "F");
+  }
+
+  @Test
+  public void should_skip_the_paths_of_units() {
+    UnitDeclaration declaration = UsesScanner.scan(""
+      + "program Project1;\n"
+      + "uses\n"
+      + "  A in 'A.pas',\n"
+      + "  B.C in 'sub\\B.C.pas' {FormC},\n"
+      + "  D;\n"
+      + "begin\n"
+      + "end.\n");
+
+    assertThat(declaration.interfaceUses()).containsExactly("A", "B.C", "D");
+  }
+
+  @Test
+  public void should_report_the_units_of_every_conditional_branch() {
+    UnitDeclaration declaration = UsesScanner.scan(""
+      + "unit Unit1;\n"
+      + "interface\n"
+      + "uses\n"
+      + "  {$IFDEF MSWINDOWS} Windows, {$ELSE} Posix.Unistd, {$ENDIF}\n"
+      + "  A{$IFDEF DEBUG}, B{$ENDIF} (*$IFNDEF X*), C(*$ENDIF*);\n"
+      + "implementation\n"
+      + "end.\n");
+
+    assertThat(declaration.interfaceUses()).containsExactly("Windows", "Posix.Unistd", "A", "B", "C");
+  }
+
+  @Test
+  public void should_read_dotted_names() {
+    UnitDeclaration declaration = UsesScanner.scan(""
+      + "unit Vendor.Lib.Unit1;\n"
+      + "interface\n"
+      + "uses System.SysUtils, Vcl . Forms;\n"
+      + "implementation\n"
+      + "end.\n");
+
+    assertThat(declaration.name()).isEqualTo("Vendor.Lib.Unit1");
+    assertThat(declaration.interfaceUses()).containsExactly("System.SysUtils", "Vcl.Forms");
+  }
+
+  @Test
+  public void should_stop_at_the_first_declaration_of_a_program() {
+    UnitDeclaration declaration = UsesScanner.scan(""
+      + "program Project1;\n"
+      + "{$APPTYPE CONSOLE}\n"
+      + "uses A;\n"
+      + "var uses: Integer;\n"
+      + "begin\n"
+      + "end.\n");
+
+    assertThat(declaration.name()).isEqualTo("Project1");
+    assertThat(declaration.interfaceUses()).containsExactly("A");
+    assertThat(declaration.implementationUses()).isEmpty();
+  }
+
+  @Test
+  public void should_read_the_uses_clause_of_a_library() {
+    UnitDeclaration declaration = UsesScanner.scan(""
+      + "library Library1;\n"
+      + "uses A, B;\n"
+      + "exports Foo;\n"
+      + "begin\n"
+      + "end.\n");
+
+    assertThat(declaration.name()).isEqualTo("Library1");
+    assertThat(declaration.interfaceUses()).containsExactly("A", "B");
+  }
+
+  @Test
+  public void should_read_the_contained_units_of_a_package_but_not_the_required_packages() {
+    UnitDeclaration declaration = UsesScanner.scan(""
+      + "package Package1;\n"
+      + "{$R *.res}\n"
+      + "requires rtl, vcl;\n"
+      + "contains A in 'A.pas', B;\n"
+      + "end.\n");
+
+    assertThat(declaration.name()).isEqualTo("Package1");
+    assertThat(declaration.interfaceUses()).containsExactly("A", "B");
+  }
+
+  @Test
+  public void should_ignore_keywords_in_strings_and_stop_after_the_implementation_uses_clause() {
+    UnitDeclaration declaration = UsesScanner.scan(""
+      + "unit Unit1;\n"
+      + "interface\n"
+      + "const S = 'uses X;';\n"
+      + "implementation\n"
+      + "uses B;\n"
+      + "procedure P; begin end;\n"
+      + "uses C;\n"
+      + "end.\n");
+
+    assertThat(declaration.interfaceUses()).isEmpty();
+    assertThat(declaration.implementationUses()).containsExactly("B");
+  }
+
+  @Test
+  public void should_find_no_declaration_without_header() {
+    assertThat(UsesScanner.scan("")).isNull();
+    assertThat(UsesScanner.scan("{ unit Unit1; } procedure P; begin end;")).isNull();
+    assertThat(UsesScanner.scan("unit ;")).isNull();
+  }
+
+}